@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.benchmark;
+
+import com.jwsphere.accumulo.AdaptiveTransportCompression;
+import com.jwsphere.accumulo.AdaptiveTransportCompression.Objective;
+import com.jwsphere.accumulo.CodecTransportCompression;
+import com.jwsphere.accumulo.ColumnarTransportCompression;
+import com.jwsphere.accumulo.ColumnarTransportCompression.Feature;
+import com.jwsphere.accumulo.DefaultTransportCompression;
+import com.jwsphere.accumulo.DeflateTransportCompression;
+import com.jwsphere.accumulo.DeflatedColumnarTransportCompression;
+import com.jwsphere.accumulo.DeflatedRelativeKeyTransportCompression;
+import com.jwsphere.accumulo.FrontCodedTransportCompression;
+import com.jwsphere.accumulo.RelativeKeyTransportCompression;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.LzCodec;
+
+/**
+ * The encodings under benchmark, referenced by name from benchmark parameters.
+ */
+public enum Compressions {
+
+	DEFAULT {
+		@Override
+		public TransportCompression create() {
+			return new DefaultTransportCompression();
+		}
+	},
+
+	DEFLATE {
+		@Override
+		public TransportCompression create() {
+			return new DeflateTransportCompression();
+		}
+	},
+
+	LZ {
+		@Override
+		public TransportCompression create() {
+			return new CodecTransportCompression(LzCodec.DEFAULT);
+		}
+	},
+
+	RELATIVE_KEY {
+		@Override
+		public TransportCompression create() {
+			return new RelativeKeyTransportCompression();
+		}
+	},
+
+	DEFLATED_RELATIVE_KEY {
+		@Override
+		public TransportCompression create() {
+			return new DeflatedRelativeKeyTransportCompression();
+		}
+	},
+
+	FRONT_CODED {
+		@Override
+		public TransportCompression create() {
+			return new FrontCodedTransportCompression();
+		}
+	},
+
+	DEFLATED_FRONT_CODED {
+		@Override
+		public TransportCompression create() {
+			return new FrontCodedTransportCompression(DeflateCodec.DEFAULT);
+		}
+	},
+
+	COLUMNAR {
+		@Override
+		public TransportCompression create() {
+			return new ColumnarTransportCompression();
+		}
+	},
+
+	DEFLATED_COLUMNAR {
+		@Override
+		public TransportCompression create() {
+			return new DeflatedColumnarTransportCompression();
+		}
+	},
+
+	DEFLATED_COLUMNAR_DELTA_DICT {
+		@Override
+		public TransportCompression create() {
+			return new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY);
+		}
+	},
+
+	DEFLATED_COLUMNAR_TYPED {
+		@Override
+		public TransportCompression create() {
+			return new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY,
+					Feature.TYPED_VALUES);
+		}
+	},
+
+	ADAPTIVE_BYTES {
+		@Override
+		public TransportCompression create() {
+			return new AdaptiveTransportCompression(Objective.bytes());
+		}
+	};
+
+	public abstract TransportCompression create();
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * Synthetic batches resembling common table layouts.  Batches are generated
+ * from a fixed seed so that every run measures the same bytes, and are sorted
+ * and free of duplicate keys like the batches of a real scan.
+ */
+public enum KeyShape {
+
+	/** Few rows with many qualifiers each, such as an entity with many attributes. */
+	WIDE_ROWS {
+		@Override
+		protected KeyValue generate(int i, Random random) {
+			return entry(String.format("entity_%08d", i / 1000), "attribute", String.format("name_%06d", i % 1000),
+					"public", random, 16);
+		}
+	},
+
+	/** Every row spreads across many column families and qualifiers. */
+	MANY_COLUMNS {
+		@Override
+		protected KeyValue generate(int i, Random random) {
+			return entry(String.format("row_%08d", i / 50), "family_" + random.nextInt(50),
+					"qualifier_" + random.nextInt(1000), "public", random, 16);
+		}
+	},
+
+	/** Small keys with values of several kilobytes. */
+	LARGE_VALUES {
+		@Override
+		protected KeyValue generate(int i, Random random) {
+			return entry(String.format("row_%08d", i), "blob", "", "", random, 4096);
+		}
+	},
+
+	/** Distinct rows labelled with one of a handful of visibility expressions. */
+	REPETITIVE_VISIBILITIES {
+		private final String[] visibilities = { "A&B&C", "(A|B)&C", "ADMIN|(A&B&C&D)" };
+
+		@Override
+		protected KeyValue generate(int i, Random random) {
+			return entry(Long.toHexString(random.nextLong()), "family", "qualifier",
+					visibilities[random.nextInt(visibilities.length)], random, 16);
+		}
+	};
+
+	private static final long SEED = 0x5eedL;
+
+	protected abstract KeyValue generate(int i, Random random);
+
+	/**
+	 * Generates entries until the batch holds the given number of distinct
+	 * keys, and returns them in key order.
+	 */
+	public List<KeyValue> generate(int size) {
+		Random random = new Random(SEED);
+		TreeMap<Key, Value> sorted = new TreeMap<Key, Value>();
+		for (int i = 0; sorted.size() < size; ++i) {
+			KeyValue kv = generate(i, random);
+			sorted.put(kv.getKey(), kv.getValue());
+		}
+		List<KeyValue> batch = new ArrayList<KeyValue>(size);
+		for (Entry<Key, Value> entry : sorted.entrySet()) {
+			batch.add(new KeyValue(entry.getKey(), entry.getValue()));
+		}
+		return batch;
+	}
+
+	/**
+	 * The number of key and value bytes in the batch before any encoding.
+	 */
+	public static long rawSize(List<KeyValue> batch) {
+		long size = 0;
+		for (KeyValue kv : batch) {
+			Key key = kv.getKey();
+			size += key.getRowData().length() + key.getColumnFamilyData().length()
+					+ key.getColumnQualifierData().length() + key.getColumnVisibilityData().length()
+					+ 8 + 1 + kv.getValue().getSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Creates an entry with a recent timestamp and a value of printable,
+	 * partially repetitive bytes.
+	 */
+	private static KeyValue entry(String row, String family, String qualifier, String visibility, Random random,
+			int valueSize) {
+		long timestamp = 1445000000000L + random.nextInt(60000);
+		byte[] value = new byte[valueSize];
+		for (int j = 0; j < valueSize; ++j) {
+			value[j] = (byte) ('a' + random.nextInt(j % 4 == 0 ? 26 : 4));
+		}
+		return new KeyValue(new Key(row, family, qualifier, visibility, timestamp), new Value(value));
+	}
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.ScanResult;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+import com.jwsphere.accumulo.TransportCompression;
+
+/**
+ * <p>
+ * Measures end-to-end scan latency for each encoding over a loopback socket
+ * shaped to a given bandwidth and one-way latency.  A server thread answers
+ * each request of the client with the next batch, compressed on demand and
+ * written as a compact thrift {@code ScanResult} as in a tablet server's
+ * continue scan response.  The client decodes every entry before requesting
+ * the next batch.  The warmup batches are scanned over a connection of their
+ * own, so the measured scan starts on a fresh connection.
+ * </p>
+ *
+ * <p>
+ * For each encoding it reports the median and p95 time to the first entry
+ * over {@code --first-scans} further scans, each on a fresh connection, from
+ * opening the connection to decoding the first entry, which includes reading
+ * the whole first {@code ScanResult}.  It also reports
+ * percentiles of the time from a request to its last decoded entry, the
+ * throughput in raw key-value MB/s and the bytes sent per batch.  Both
+ * directions of the link are shaped.  Every batch of a run holds the same
+ * entries, generated from a {@link KeyShape}.
+ * </p>
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.jwsphere.accumulo.benchmark.LoopbackScanBenchmark --bandwidth 1 --latency-ms 0.5
+ * </pre>
+ */
+public class LoopbackScanBenchmark {
+
+	private static final String USAGE = "usage: LoopbackScanBenchmark [--bandwidth gbps] [--latency-ms ms] "
+			+ "[--batch-size n] [--batches n] [--warmup n] [--first-scans n] [--shape SHAPE] [--compressions A,B,...]";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private double bandwidth = 1;
+	private long latencyNanos = 0;
+	private int batchSize = 1000;
+	private int batches = 200;
+	private int warmup = 50;
+	private int firstScans = 20;
+	private KeyShape shape = KeyShape.WIDE_ROWS;
+	private List<Compressions> compressions = Arrays.asList(Compressions.values());
+
+	public static void main(String[] args) throws Exception {
+		LoopbackScanBenchmark benchmark = new LoopbackScanBenchmark();
+		try {
+			benchmark.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		System.out.println(String.format("%s batches of %d entries, %.3f Gbps, %.3f ms one-way latency",
+				benchmark.shape, benchmark.batchSize, benchmark.bandwidth, benchmark.latencyNanos / 1e6));
+		System.out.println(String.format("%-32s %10s %10s %10s %10s %10s %10s %12s", "compression", "first p50", "first p95",
+				"batch p50", "batch p95", "batch p99", "MB/s", "wire bytes"));
+		for (Compressions compression : benchmark.compressions) {
+			System.out.println(benchmark.run(compression).toString());
+		}
+	}
+
+	void parse(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			String arg = args[i];
+			if (arg.equals("--bandwidth")) {
+				bandwidth = Double.parseDouble(value(args, ++i));
+			} else if (arg.equals("--latency-ms")) {
+				latencyNanos = (long) (Double.parseDouble(value(args, ++i)) * 1e6);
+			} else if (arg.equals("--batch-size")) {
+				batchSize = Integer.parseInt(value(args, ++i));
+			} else if (arg.equals("--batches")) {
+				batches = Integer.parseInt(value(args, ++i));
+			} else if (arg.equals("--warmup")) {
+				warmup = Integer.parseInt(value(args, ++i));
+			} else if (arg.equals("--first-scans")) {
+				firstScans = Integer.parseInt(value(args, ++i));
+			} else if (arg.equals("--shape")) {
+				shape = KeyShape.valueOf(value(args, ++i));
+			} else if (arg.equals("--compressions")) {
+				compressions = new ArrayList<Compressions>();
+				for (String name : value(args, ++i).split(",")) {
+					compressions.add(Compressions.valueOf(name.trim()));
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		if (batchSize < 1 || batches < 1) {
+			throw new IllegalArgumentException("Batch size and batches must be positive.");
+		}
+		if (warmup < 0) {
+			throw new IllegalArgumentException("Warmup must not be negative.");
+		}
+		if (firstScans < 1) {
+			throw new IllegalArgumentException("First entry scans must be positive.");
+		}
+	}
+
+	private static String value(String[] args, int i) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+		}
+		return args[i];
+	}
+
+	/**
+	 * Scans {@code warmup} batches on one connection, the measured batches on
+	 * another, and then a single batch on each of {@code firstScans} fresh
+	 * connections to time the first entry.
+	 */
+	Result run(Compressions compression) throws IOException, InterruptedException {
+		final TransportCompression encoding = compression.create();
+		final List<KeyValue> batch = shape.generate(batchSize);
+
+		final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> server = executor.submit(new Callable<Long>() {
+				public Long call() throws Exception {
+					return serve(serverSocket, encoding, batch, scans());
+				}
+			});
+
+			if (warmup > 0) {
+				scan(serverSocket, encoding, new long[warmup]);
+			}
+			long[] latencies = new long[batches];
+			long start = System.nanoTime();
+			scan(serverSocket, encoding, latencies);
+			long elapsed = System.nanoTime() - start;
+			long[] first = new long[firstScans];
+			for (int i = 0; i < firstScans; ++i) {
+				first[i] = scan(serverSocket, encoding, new long[1]);
+			}
+			long wireBytes = server.get();
+			return new Result(compression.name(), first, latencies, elapsed,
+					KeyShape.rawSize(batch) * batches, wireBytes / (warmup + batches + firstScans));
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * The number of batches of each scan of a run, in the order of the scans.
+	 */
+	private int[] scans() {
+		int[] scans = new int[2 + firstScans];
+		scans[0] = warmup;
+		scans[1] = batches;
+		Arrays.fill(scans, 2, scans.length, 1);
+		return scans;
+	}
+
+	/**
+	 * Scans one batch for each latency on a new connection, recording the time
+	 * from each request to its last decoded entry.  Returns the time from
+	 * opening the connection to the first decoded entry of the scan.
+	 */
+	private long scan(ServerSocket serverSocket, TransportCompression encoding, long[] latencies) throws IOException {
+		long opened = System.nanoTime();
+		long firstEntry = 0;
+		Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+		try {
+			socket.setTcpNoDelay(true);
+			TTransport transport = new TIOStreamTransport(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE),
+					new BufferedOutputStream(new ShapedOutputStream(socket.getOutputStream(), bandwidth, latencyNanos), BUFFER_SIZE));
+			TCompactProtocol proto = new TCompactProtocol(transport);
+			for (int i = 0; i < latencies.length; ++i) {
+				long requested = System.nanoTime();
+				proto.writeI32(i);
+				transport.flush();
+				ScanResult result = new ScanResult();
+				result.read(proto);
+				Iterator<KeyValue> entries = encoding.decompressIterator(result.getResults());
+				while (entries.hasNext()) {
+					entries.next();
+					if (firstEntry == 0) {
+						firstEntry = System.nanoTime();
+					}
+				}
+				latencies[i] = System.nanoTime() - requested;
+			}
+		} catch (TException e) {
+			throw new IOException(e);
+		} finally {
+			socket.close();
+		}
+		return firstEntry - opened;
+	}
+
+	/**
+	 * Answers each request with a compressed batch, accepting a connection for
+	 * each scan of the given number of batches, and returns the number of
+	 * bytes sent.
+	 */
+	private long serve(ServerSocket serverSocket, TransportCompression encoding, List<KeyValue> batch, int... scans)
+			throws IOException, TException {
+		long bytes = 0;
+		for (int count : scans) {
+			if (count == 0) {
+				continue;
+			}
+			Socket socket = serverSocket.accept();
+			try {
+				socket.setTcpNoDelay(true);
+				ShapedOutputStream link = new ShapedOutputStream(socket.getOutputStream(), bandwidth, latencyNanos);
+				TTransport transport = new TIOStreamTransport(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE),
+						new BufferedOutputStream(link, BUFFER_SIZE));
+				TCompactProtocol proto = new TCompactProtocol(transport);
+				for (int i = 0; i < count; ++i) {
+					int requested = proto.readI32();
+					List<TKeyValue> compressed = encoding.compress(batch);
+					new ScanResult(compressed, requested < count - 1).write(proto);
+					transport.flush();
+				}
+				bytes += link.getBytesWritten();
+			} finally {
+				socket.close();
+			}
+		}
+		return bytes;
+	}
+
+	static class Result {
+
+		private final String compression;
+		private final long[] first;
+		private final long[] latencies;
+		private final long elapsedNanos;
+		private final long rawBytes;
+		private final long wireBytesPerBatch;
+
+		Result(String compression, long[] first, long[] latencies, long elapsedNanos, long rawBytes, long wireBytesPerBatch) {
+			this.compression = compression;
+			this.first = first.clone();
+			this.latencies = latencies.clone();
+			Arrays.sort(this.first);
+			Arrays.sort(this.latencies);
+			this.elapsedNanos = elapsedNanos;
+			this.rawBytes = rawBytes;
+			this.wireBytesPerBatch = wireBytesPerBatch;
+		}
+
+		/**
+		 * The given percentile of the sorted values, in milliseconds.
+		 */
+		private static double percentile(long[] sorted, double percentile) {
+			int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+			return sorted[Math.max(rank, 1) - 1] / 1e6;
+		}
+
+		double getThroughput() {
+			return rawBytes * 1e3 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-32s %10.3f %10.3f %10.3f %10.3f %10.3f %10.1f %12d", compression,
+					percentile(first, 50), percentile(first, 95),
+					percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99), getThroughput(),
+					wireBytesPerBatch);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.benchmark;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shapes the bytes written to a stream to a link with a given bandwidth and
+ * one-way latency.  Writes are delayed until the link would have transmitted
+ * them, and each flush, which ends a message, is delayed by the latency.
+ */
+public class ShapedOutputStream extends FilterOutputStream {
+
+	private final double nanosPerByte;
+	private final long latencyNanos;
+	private long linkFreeAt = 0;
+	private long bytesWritten = 0;
+
+	/**
+	 * @param gigabitsPerSecond the bandwidth, or zero for an unlimited link
+	 * @param latencyNanos the one-way latency added to each flush
+	 */
+	public ShapedOutputStream(OutputStream out, double gigabitsPerSecond, long latencyNanos) {
+		super(out);
+		this.nanosPerByte = gigabitsPerSecond > 0 ? 8 / gigabitsPerSecond : 0;
+		this.latencyNanos = latencyNanos;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		transmit(1);
+		out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		transmit(len);
+		out.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		sleepUntil(System.nanoTime() + latencyNanos);
+		out.flush();
+	}
+
+	/**
+	 * The number of bytes written to the link.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	private void transmit(int bytes) {
+		bytesWritten += bytes;
+		if (nanosPerByte == 0) {
+			return;
+		}
+		linkFreeAt = Math.max(linkFreeAt, System.nanoTime()) + (long) (bytes * nanosPerByte);
+		sleepUntil(linkFreeAt);
+	}
+
+	private static void sleepUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		while (remaining > 0) {
+			LockSupport.parkNanos(remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.benchmark;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+/**
+ * <p>
+ * Measures the encode and decode throughput of each encoding.  Besides the
+ * batches per second reported by JMH, the entries and raw key-value bytes
+ * processed per second are reported as auxiliary counters.  Run with
+ * {@code -prof gc} to additionally report the allocation rate.
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TransportCompressionBenchmark -p shape=WIDE_ROWS -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class TransportCompressionBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int batchSize;
+
+	@Param({ "WIDE_ROWS", "MANY_COLUMNS", "LARGE_VALUES", "REPETITIVE_VISIBILITIES" })
+	public KeyShape shape;
+
+	@Param({ "DEFAULT", "DEFLATE", "LZ", "RELATIVE_KEY", "DEFLATED_RELATIVE_KEY", "FRONT_CODED", "DEFLATED_FRONT_CODED",
+			"COLUMNAR", "DEFLATED_COLUMNAR", "DEFLATED_COLUMNAR_DELTA_DICT", "DEFLATED_COLUMNAR_TYPED",
+			"ADAPTIVE_BYTES" })
+	public Compressions compression;
+
+	private TransportCompression encoding;
+	private List<KeyValue> batch;
+	private long rawSize;
+	private List<TKeyValue> compressed;
+	private ByteBufferOutputStream buffer;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		encoding = compression.create();
+		batch = shape.generate(batchSize);
+		rawSize = KeyShape.rawSize(batch);
+		compressed = encoding.compress(batch);
+		buffer = new ByteBufferOutputStream();
+	}
+
+	/**
+	 * Counts the entries and raw bytes processed.  JMH reports the counters as
+	 * rates alongside the primary result.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters
+	public static class Throughput {
+
+		public long entries;
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			entries = 0;
+			bytes = 0;
+		}
+	}
+
+	@Benchmark
+	public List<TKeyValue> encode(Throughput throughput) {
+		buffer.reset();
+		List<TKeyValue> result = encoding.compress(batch, buffer);
+		throughput.entries += batchSize;
+		throughput.bytes += rawSize;
+		return result;
+	}
+
+	@Benchmark
+	public void decode(Throughput throughput, Blackhole blackhole) {
+		Iterator<KeyValue> entries = encoding.decompressIterator(compressed);
+		while (entries.hasNext()) {
+			blackhole.consume(entries.next());
+		}
+		throughput.entries += batchSize;
+		throughput.bytes += rawSize;
+	}
+
+}
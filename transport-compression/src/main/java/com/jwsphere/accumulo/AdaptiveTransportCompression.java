@@ -0,0 +1,265 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.ColumnarTransportCompression.Feature;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.codec.LzCodec;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+/**
+ * <p>
+ * Chooses among several candidate encodings for every batch.  A prefix of
+ * each batch is compressed and decompressed with every candidate, and the
+ * measured sizes and times are scaled to the whole batch and weighed by an
+ * {@link Objective}, such as the number of bytes on the wire or the end-to-end
+ * latency over a link of a given bandwidth.  The batch is then compressed with
+ * the cheapest candidate.
+ * </p>
+ *
+ * <p>
+ * Candidates must encode a batch as a singleton TKeyValue collection.  The
+ * value of the singleton written by the chosen candidate is prefixed by a byte
+ * identifying the candidate so that the decoder need not repeat the choice.
+ * </p>
+ */
+public class AdaptiveTransportCompression extends TransportCompression {
+
+	public static final int DEFAULT_SAMPLE_SIZE = 64;
+
+	private static final int MAX_CANDIDATES = 256;
+	private static final int TIMESTAMP_SIZE = 8;
+
+	private final Objective objective;
+	private final List<TransportCompression> candidates;
+	private final int sampleSize;
+	private final AtomicLongArray selections;
+
+	/**
+	 * Chooses among columnar encodings with no codec, the lz codec, and fast
+	 * and default deflate.
+	 */
+	public AdaptiveTransportCompression(Objective objective) {
+		this(objective, defaultCandidates(), DEFAULT_SAMPLE_SIZE);
+	}
+
+	public AdaptiveTransportCompression(Objective objective, List<? extends TransportCompression> candidates, int sampleSize) {
+		if (candidates.isEmpty() || candidates.size() > MAX_CANDIDATES) {
+			throw new IllegalArgumentException("Between 1 and " + MAX_CANDIDATES + " candidates are required.");
+		}
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Sample size must be positive.");
+		}
+		this.objective = objective;
+		this.candidates = Collections.unmodifiableList(new ArrayList<TransportCompression>(candidates));
+		this.sampleSize = sampleSize;
+		this.selections = new AtomicLongArray(candidates.size());
+	}
+
+	public Objective getObjective() {
+		return objective;
+	}
+
+	public List<TransportCompression> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * The number of batches compressed by each candidate, in candidate order.
+	 */
+	public long[] getSelections() {
+		long[] counts = new long[selections.length()];
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] = selections.get(i);
+		}
+		return counts;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + objective + "]";
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> data) {
+		return compress(data, new ByteBufferOutputStream());
+	}
+
+	/**
+	 * Writes the candidate id followed by the payload of the chosen candidate.
+	 * A candidate that does not write to the supplied buffer has its returned
+	 * value appended to the buffer instead.
+	 */
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> data, ByteBufferOutputStream buffer) {
+		int id = choose(data);
+		selections.incrementAndGet(id);
+		buffer.write(id);
+		int tagged = buffer.size();
+		List<TKeyValue> compressed = candidates.get(id).compress(data, buffer);
+		if (compressed.size() != 1) {
+			throw new IllegalArgumentException("Candidate " + candidates.get(id).getName() + " did not produce a singleton.");
+		}
+		if (buffer.size() == tagged) {
+			buffer.write(singletonValue(compressed));
+		}
+		return singleton(buffer);
+	}
+
+	@Override
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		return Lists.newArrayList(decompressIterator(data));
+	}
+
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		ByteBuffer payload = singletonValue(data).duplicate();
+		int id = payload.get() & 0xFF;
+		if (id >= candidates.size()) {
+			throw new IllegalArgumentException("Unknown candidate " + id);
+		}
+		TKeyValue tagged = data.get(0);
+		TKeyValue untagged = new TKeyValue(tagged.getKey(), payload.slice());
+		return candidates.get(id).decompressIterator(Collections.singletonList(untagged));
+	}
+
+	/**
+	 * Returns the index of the candidate with the lowest estimated cost for
+	 * the batch.
+	 */
+	int choose(List<? extends KeyValue> data) {
+		if (candidates.size() == 1 || data.isEmpty()) {
+			return 0;
+		}
+		List<? extends KeyValue> sample = data.subList(0, Math.min(sampleSize, data.size()));
+		double scale = (double) rawSize(data) / rawSize(sample);
+		int best = 0;
+		double bestCost = Double.MAX_VALUE;
+		for (int i = 0; i < candidates.size(); ++i) {
+			TransportCompression candidate = candidates.get(i);
+			long start = System.nanoTime();
+			List<TKeyValue> compressed = candidate.compress(sample);
+			long encoded = System.nanoTime();
+			Iterator<KeyValue> decompressed = candidate.decompressIterator(compressed);
+			while (decompressed.hasNext()) {
+				decompressed.next();
+			}
+			long decoded = System.nanoTime();
+
+			double cost = objective.cost(singletonValue(compressed).remaining() * scale,
+					(encoded - start) * scale, (decoded - encoded) * scale);
+			if (cost < bestCost) {
+				best = i;
+				bestCost = cost;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * An estimate of the bytes needed to represent the batch without any
+	 * encoding, used to scale the measurements of a sample to the batch.
+	 */
+	private static long rawSize(List<? extends KeyValue> data) {
+		long size = 0;
+		for (KeyValue kv : data) {
+			Key key = kv.getKey();
+			size += key.getRowData().length() + key.getColumnFamilyData().length()
+					+ key.getColumnQualifierData().length() + key.getColumnVisibilityData().length()
+					+ TIMESTAMP_SIZE + 1 + kv.getValue().getSize();
+		}
+		return Math.max(size, 1);
+	}
+
+	private static List<TransportCompression> defaultCandidates() {
+		return Arrays.<TransportCompression> asList(
+				new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY),
+				new ColumnarTransportCompression(LzCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY),
+				new ColumnarTransportCompression(DeflateCodec.BEST_SPEED, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY),
+				new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY));
+	}
+
+	/**
+	 * The quantity the adaptive compression minimizes.
+	 */
+	public static abstract class Objective {
+
+		/**
+		 * Estimates the cost of sending a batch.
+		 * 
+		 * @param bytes the estimated size of the compressed batch
+		 * @param encodeNanos the estimated time to compress the batch
+		 * @param decodeNanos the estimated time to decompress the batch
+		 */
+		public abstract double cost(double bytes, double encodeNanos, double decodeNanos);
+
+		/**
+		 * Minimizes the number of bytes on the wire regardless of time.
+		 */
+		public static Objective bytes() {
+			return new Objective() {
+
+				@Override
+				public double cost(double bytes, double encodeNanos, double decodeNanos) {
+					return bytes;
+				}
+
+				@Override
+				public String toString() {
+					return "bytes";
+				}
+			};
+		}
+
+		/**
+		 * Minimizes the time to compress, transfer and decompress a batch over
+		 * a link with the given bandwidth.
+		 */
+		public static Objective latency(final double gigabitsPerSecond) {
+			if (gigabitsPerSecond <= 0) {
+				throw new IllegalArgumentException("Bandwidth must be positive.");
+			}
+			return new Objective() {
+
+				@Override
+				public double cost(double bytes, double encodeNanos, double decodeNanos) {
+					// a gigabit per second transfers one bit per nanosecond
+					return encodeNanos + decodeNanos + bytes * 8 / gigabitsPerSecond;
+				}
+
+				@Override
+				public String toString() {
+					return "latency@" + gigabitsPerSecond + "Gbps";
+				}
+			};
+		}
+	}
+
+}
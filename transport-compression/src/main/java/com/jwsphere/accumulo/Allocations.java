@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reports the bytes allocated by the current thread on JVMs that support it.
+ */
+final class Allocations {
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private Allocations() {
+	}
+
+	/**
+	 * The bytes allocated by the current thread so far, or
+	 * {@link CompressionStatistics#UNKNOWN} if the JVM cannot report them.
+	 */
+	static long current() {
+		if (THREADS == null) {
+			return CompressionStatistics.UNKNOWN;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The bytes allocated by the current thread since {@code start} was taken
+	 * from {@link #current()}.
+	 */
+	static long since(long start) {
+		if (start == CompressionStatistics.UNKNOWN) {
+			return CompressionStatistics.UNKNOWN;
+		}
+		return current() - start;
+	}
+
+	private static com.sun.management.ThreadMXBean threads() {
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+				if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+					return threads;
+				}
+			}
+		} catch (LinkageError e) {
+			// not a HotSpot derived JVM
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.Map.Entry;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * <p>
+ * Decides when a batch is full.  A batch is capped by a number of entries,
+ * by an estimate of its uncompressed size, or by a target compressed size.
+ * Every batch holds at least one entry, so an entry larger than the budget
+ * forms a batch of its own.
+ * </p>
+ *
+ * <p>
+ * A compressed size target is turned into an uncompressed budget with an
+ * estimate of the compression ratio.  The estimate starts at 1 and follows
+ * the ratios reported to {@link #observe(CompressionStatistics)}, so the
+ * budget adapts to the data as batches are compressed.
+ * </p>
+ */
+public class BatchBudget {
+
+	/** Bytes of an entry besides its key fields and value: the timestamp and the delete flag. */
+	static final int ENTRY_OVERHEAD = 9;
+
+	/** The weight of the latest observed ratio in the running estimate. */
+	private static final double SMOOTHING = 0.5;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long targetCompressedBytes;
+	private double ratio = 1.0;
+
+	private BatchBudget(int maxEntries, long maxBytes, long targetCompressedBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.targetCompressedBytes = targetCompressedBytes;
+	}
+
+	public static BatchBudget entries(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+		return new BatchBudget(maxEntries, Long.MAX_VALUE, 0);
+	}
+
+	public static BatchBudget bytes(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Batch byte budget must be positive.");
+		}
+		return new BatchBudget(Integer.MAX_VALUE, maxBytes, 0);
+	}
+
+	public static BatchBudget compressedBytes(long targetCompressedBytes) {
+		if (targetCompressedBytes < 1) {
+			throw new IllegalArgumentException("Compressed batch target must be positive.");
+		}
+		return new BatchBudget(Integer.MAX_VALUE, Long.MAX_VALUE, targetCompressedBytes);
+	}
+
+	/**
+	 * Additionally caps the estimated uncompressed size of each batch.
+	 */
+	public BatchBudget withMaxBytes(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Batch byte budget must be positive.");
+		}
+		return new BatchBudget(maxEntries, maxBytes, targetCompressedBytes);
+	}
+
+	/**
+	 * Additionally targets a compressed size for each batch, which requires
+	 * the compressed batches to be reported to {@link #observe}.
+	 */
+	public BatchBudget withCompressedBytes(long targetCompressedBytes) {
+		if (targetCompressedBytes < 1) {
+			throw new IllegalArgumentException("Compressed batch target must be positive.");
+		}
+		return new BatchBudget(maxEntries, maxBytes, targetCompressedBytes);
+	}
+
+	/**
+	 * The estimated uncompressed size of an entry.
+	 */
+	public static long sizeOf(Entry<Key, Value> entry) {
+		return sizeOf(entry.getKey(), entry.getValue());
+	}
+
+	public static long sizeOf(Key key, Value value) {
+		return key.getLength() + ENTRY_OVERHEAD + value.getSize();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * The uncompressed byte budget of the next batch.
+	 */
+	public synchronized long getMaxBytes() {
+		if (targetCompressedBytes == 0) {
+			return maxBytes;
+		}
+		return Math.min(maxBytes, Math.max(1, (long) (targetCompressedBytes * ratio)));
+	}
+
+	/**
+	 * Folds the compression ratio of a batch into the estimate used for a
+	 * compressed size target.  Has no effect on the other budgets.
+	 */
+	public synchronized void observe(CompressionStatistics stats) {
+		if (stats.getCompressedSize() > 0 && stats.getUncompressedSize() > 0) {
+			ratio = (1 - SMOOTHING) * ratio + SMOOTHING * stats.getCompressionRatio();
+		}
+	}
+
+	/**
+	 * Whether a batch with the given number of entries and estimated bytes
+	 * has room for an entry of the given size, where {@code maxBytes} was read
+	 * from {@link #getMaxBytes()} when the batch was started.
+	 */
+	public boolean fits(int entries, long bytes, long entryBytes, long maxBytes) {
+		return entries == 0 || (entries < maxEntries && bytes + entryBytes <= maxBytes);
+	}
+
+}
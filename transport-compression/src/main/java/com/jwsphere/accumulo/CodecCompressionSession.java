@@ -0,0 +1,76 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.CodecSession;
+import com.jwsphere.accumulo.codec.Codecs;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * A session for encodings whose payload passes through a {@link Codec}.  Each
+ * payload starts with an uncompressed batch sequence number so that a batch
+ * decompressed out of order is detected rather than silently corrupted.
+ */
+abstract class CodecCompressionSession extends CompressionSession {
+
+	private final CodecSession codec;
+	private long nextCompressed;
+	private long nextDecompressed;
+
+	CodecCompressionSession(String name, Codec codec) {
+		super(name + "+session");
+		this.codec = Codecs.newSession(codec);
+	}
+
+	/**
+	 * Starts the next batch, returning the stream its payload is written to.
+	 */
+	protected OutputStream openOutput(ByteBufferOutputStream buffer) throws IOException {
+		Varints.writeUnsignedLong(new DataOutputStream(buffer), nextCompressed++);
+		return codec.compress(buffer);
+	}
+
+	/**
+	 * Starts decompressing the next batch, verifying that it follows the
+	 * previously decompressed batch.
+	 */
+	protected InputStream openInput(List<TKeyValue> data) throws IOException {
+		DataInputStream in = new DataInputStream(TransportCompression.singletonInput(data));
+		long sequence = Varints.readUnsignedLong(in);
+		if (sequence != nextDecompressed) {
+			throw new IOException("Expected batch " + nextDecompressed + " of the session but found " + sequence + ".");
+		}
+		++nextDecompressed;
+		return codec.decompress(in);
+	}
+
+	@Override
+	public void close() {
+		codec.close();
+	}
+
+}
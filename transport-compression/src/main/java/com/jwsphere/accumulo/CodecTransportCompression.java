@@ -0,0 +1,225 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.ScanResult;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+/**
+ * Compresses the batch of KeyValue pairs by encoding a ScanResult thrift
+ * object and passing the resulting bytes through a {@link Codec}, storing
+ * the compressed result as the value for a singleton collection of TKeyValue
+ * objects.
+ */
+public class CodecTransportCompression extends TransportCompression {
+
+	/** Thrift field id of {@code ScanResult.results}. */
+	private static final short RESULTS_FIELD_ID = 1;
+
+	private final Codec codec;
+
+	public CodecTransportCompression(Codec codec) {
+		this.codec = codec;
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + codec.getName() + "]";
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source) {
+		return compress(source, new ByteBufferOutputStream());
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+		try {
+			encode(source, codec.compress(buffer));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return singleton(buffer);
+	}
+
+	@Override
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		TTransport transport;
+		try {
+			transport = new TIOStreamTransport(codec.decompress(singletonInput(data)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		TCompactProtocol proto = new TCompactProtocol(transport);
+		ScanResult result = new ScanResult();
+		try {
+			transport.open();
+			result.read(proto);
+		} catch (TException e) {
+			throw new RuntimeException(e);
+		} finally {
+			transport.close();
+		}
+		List<TKeyValue> decoded = result.getResults();
+		return fromThrift(decoded);
+	}
+
+	/**
+	 * Reads the results list of the encoded ScanResult one element at a time
+	 * rather than materializing the whole struct.
+	 */
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		try {
+			return decodeIterator(codec.decompress(singletonInput(data)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Keeps the codec history across batches when the codec supports it.
+	 */
+	@Override
+	public CompressionSession newSession() {
+		return new CodecCompressionSession(getName(), codec) {
+
+			@Override
+			public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+				try {
+					encode(source, openOutput(buffer));
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				return singleton(buffer);
+			}
+
+			@Override
+			public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+				try {
+					return decodeIterator(openInput(data));
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Writes the batch to the stream as a ScanResult and closes it.
+	 */
+	private static void encode(List<? extends KeyValue> source, OutputStream stream) {
+		ScanResult result = new ScanResult(toThrift(source), false);
+		TTransport transport = new TIOStreamTransport(stream);
+		TCompactProtocol proto = new TCompactProtocol(transport);
+		try {
+			transport.open();
+			result.write(proto);
+		} catch (TException e) {
+			throw new RuntimeException(e);
+		} finally {
+			transport.close();
+		}
+	}
+
+	private static Iterator<KeyValue> decodeIterator(InputStream stream) {
+		final TTransport transport = new TIOStreamTransport(stream);
+		final TCompactProtocol proto = new TCompactProtocol(transport);
+		final int size;
+		try {
+			transport.open();
+			proto.readStructBegin();
+			TField field = proto.readFieldBegin();
+			if (field.id != RESULTS_FIELD_ID || field.type != TType.LIST) {
+				throw new IllegalArgumentException("Unexpected ScanResult field " + field.id);
+			}
+			TList list = proto.readListBegin();
+			size = list.size;
+		} catch (TException e) {
+			transport.close();
+			throw new RuntimeException(e);
+		}
+		return new AbstractIterator<KeyValue>() {
+
+			private int remaining = size;
+
+			@Override
+			protected KeyValue computeNext() {
+				if (remaining == 0) {
+					try {
+						readStructEnd(proto);
+					} catch (TException e) {
+						throw new RuntimeException(e);
+					} finally {
+						transport.close();
+					}
+					return endOfData();
+				}
+				--remaining;
+				TKeyValue tkv = new TKeyValue();
+				try {
+					tkv.read(proto);
+				} catch (TException e) {
+					transport.close();
+					throw new RuntimeException(e);
+				}
+				return new KeyValue(new Key(tkv.getKey()), new Value(tkv.getValue(), false));
+			}
+		};
+	}
+
+	/**
+	 * Consumes the fields following the results list so that the whole
+	 * payload has been read when the stream is closed.
+	 */
+	private static void readStructEnd(TCompactProtocol proto) throws TException {
+		proto.readListEnd();
+		proto.readFieldEnd();
+		TField field = proto.readFieldBegin();
+		while (field.type != TType.STOP) {
+			TProtocolUtil.skip(proto, field.type);
+			proto.readFieldEnd();
+			field = proto.readFieldBegin();
+		}
+		proto.readStructEnd();
+	}
+
+}
@@ -0,0 +1,552 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.io.ByteArrayReader;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * Transposes a batch of key-value pairs into one column per field so that similar
+ * bytes are stored next to each other.  Rows, column families, column qualifiers
+ * and column visibilities are each written as a run of length-prefixed values
+ * where a zero length indicates the value is the same as the previous entry.
+ * Timestamps, delete flags, value lengths and value bytes are written to their
+ * own columns.  The columns are concatenated, each prefixed by its length, passed
+ * through a {@link Codec} and stored as the value of a singleton TKeyValue
+ * collection.  Since the decompressed payload is a single contiguous buffer it
+ * can be decoded into a {@link SlabBatch} without copying any field bytes.
+ *
+ * <p>
+ * Timestamps are written as fixed eight byte values and delete flags as one
+ * byte each unless {@link Feature#DELTA_TIMESTAMPS} is enabled, in which case
+ * each timestamp is written as a zig-zag varint delta from the first timestamp
+ * of the batch and the delete flags are packed into a bitmap.  With
+ * {@link Feature#DICTIONARY} the column families and visibilities are replaced
+ * by ids into a dictionary of the distinct values in the batch, unless the
+ * values are diverse enough that the inline encoding is smaller.
+ * </p>
+ *
+ * <p>
+ * With {@link Feature#TYPED_VALUES} the value lengths and bytes are replaced
+ * by the smallest of a few encodings chosen per batch, which recognize empty
+ * values, runs of equal values and values holding longs.  Raw and repeated
+ * values remain views of the payload, while longs are decoded into an array
+ * of their own.
+ * </p>
+ */
+public class ColumnarTransportCompression extends TransportCompression {
+
+	private static final int ROW = 0;
+	private static final int FAMILY = 1;
+	private static final int QUALIFIER = 2;
+	private static final int VISIBILITY = 3;
+	private static final int TIMESTAMP = 4;
+	private static final int DELETE = 5;
+	private static final int VALUE_LENGTH = 6;
+	private static final int VALUE = 7;
+	private static final int NUM_COLUMNS = 8;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final int TIMESTAMP_SIZE = 8;
+
+	private static final int INLINE = 0;
+	private static final int DICTIONARY = 1;
+	private static final int MAX_DICTIONARY_ENTRIES = 1024;
+
+	/**
+	 * Optional encodings of individual columns.
+	 */
+	public enum Feature {
+
+		/** Zig-zag varint timestamp deltas and a delete flag bitmap. */
+		DELTA_TIMESTAMPS("delta"),
+
+		/** Batch dictionaries for column families and visibilities. */
+		DICTIONARY("dict"),
+
+		/** Empty, repeated and numeric values encoded by type. */
+		TYPED_VALUES("typed");
+
+		private final String label;
+
+		private Feature(String label) {
+			this.label = label;
+		}
+	}
+
+	private final Codec codec;
+	private final EnumSet<Feature> features;
+
+	public ColumnarTransportCompression() {
+		this(IdentityCodec.INSTANCE);
+	}
+
+	public ColumnarTransportCompression(Codec codec, Feature... features) {
+		this.codec = codec;
+		this.features = EnumSet.noneOf(Feature.class);
+		this.features.addAll(Arrays.asList(features));
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	public boolean hasFeature(Feature feature) {
+		return features.contains(feature);
+	}
+
+	@Override
+	public String getName() {
+		StringBuilder sb = new StringBuilder(super.getName()).append('[').append(codec.getName());
+		for (Feature feature : features) {
+			sb.append(',').append(feature.label);
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Additionally reports the bytes spent on timestamps and delete flags by
+	 * the fixed width encoding, and on column families and visibilities by the
+	 * inline encoding, and on values by the raw encoding, alongside the bytes
+	 * spent by the encoding in use before the codec is applied.
+	 */
+	@Override
+	public CompressionStatistics evaluate(List<? extends KeyValue> data) {
+		long fixedTimestamps = (long) TIMESTAMP_SIZE * data.size();
+		long timestamps = fixedTimestamps;
+		long deletes = data.size();
+		if (hasFeature(Feature.DELTA_TIMESTAMPS)) {
+			timestamps = deltaTimestampsSize(data);
+			deletes = bitmapSize(data.size());
+		}
+		CompressionStatistics stats = super.evaluate(data)
+				.withField("timestamp", fixedTimestamps, timestamps)
+				.withField("delete", data.size(), deletes);
+		if (hasFeature(Feature.DICTIONARY)) {
+			DictionaryColumn families = new DictionaryColumn();
+			DictionaryColumn visibilities = new DictionaryColumn();
+			try {
+				for (KeyValue kv : data) {
+					families.add(kv.getKey().getColumnFamilyData());
+					visibilities.add(kv.getKey().getColumnVisibilityData());
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			stats = stats.withField("family", families.inlineSize(), families.size())
+					.withField("visibility", visibilities.inlineSize(), visibilities.size());
+		}
+		if (hasFeature(Feature.TYPED_VALUES)) {
+			stats = stats.withField("value", ValueEncoding.rawSize(data), ValueEncoding.size(data));
+		}
+		return stats;
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source) {
+		return compress(source, new ByteBufferOutputStream());
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+		try {
+			encode(source, codec.compress(buffer));
+			return singleton(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		return Lists.newArrayList(decompressIterator(data));
+	}
+
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		return iterator(decompressSlab(data));
+	}
+
+	/**
+	 * Keeps the codec history across batches when the codec supports it.  The
+	 * repeated field references are not carried over since the entries of a
+	 * slab may only refer to bytes within that slab.
+	 */
+	@Override
+	public CompressionSession newSession() {
+		return new CodecCompressionSession(getName(), codec) {
+
+			@Override
+			public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+				try {
+					encode(source, openOutput(buffer));
+					return singleton(buffer);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+				try {
+					return iterator(parse(readFully(openInput(data), singletonValue(data).remaining())));
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	private static Iterator<KeyValue> iterator(final SlabBatch batch) {
+		return new AbstractIterator<KeyValue>() {
+
+			private int next = 0;
+
+			@Override
+			protected KeyValue computeNext() {
+				if (next == batch.size()) {
+					return endOfData();
+				}
+				return batch.getKeyValue(next++);
+			}
+		};
+	}
+
+	/**
+	 * Decodes the batch into a {@link SlabBatch} whose keys and values are views
+	 * of the decompressed payload.  When no codec is applied the payload is the
+	 * thrift value buffer itself and no field bytes are copied at all.
+	 */
+	public SlabBatch decompressSlab(List<TKeyValue> data) {
+		try {
+			ByteBuffer payload = singletonValue(data);
+			if (codec != IdentityCodec.INSTANCE || !payload.hasArray()) {
+				payload = readFully(codec.decompress(singletonInput(data)), payload.remaining());
+			}
+			return parse(payload);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the columns of the batch to the stream and closes it.
+	 */
+	private void encode(List<? extends KeyValue> source, OutputStream stream) throws IOException {
+		ByteArrayOutputStream[] columns = new ByteArrayOutputStream[NUM_COLUMNS];
+		DataOutputStream[] outs = new DataOutputStream[NUM_COLUMNS];
+		for (int i = 0; i < NUM_COLUMNS; ++i) {
+			columns[i] = new ByteArrayOutputStream();
+			outs[i] = new DataOutputStream(columns[i]);
+		}
+
+		ByteSequence[] prev = new ByteSequence[VISIBILITY + 1];
+		boolean deltaEncoded = hasFeature(Feature.DELTA_TIMESTAMPS);
+		long base = source.isEmpty() ? 0 : source.get(0).getKey().getTimestamp();
+		byte[] deleted = new byte[bitmapSize(source.size())];
+		boolean typedValues = hasFeature(Feature.TYPED_VALUES);
+		if (deltaEncoded) {
+			outs[TIMESTAMP].writeLong(base);
+		}
+		DictionaryColumn families = null;
+		DictionaryColumn visibilities = null;
+		if (hasFeature(Feature.DICTIONARY)) {
+			families = new DictionaryColumn();
+			visibilities = new DictionaryColumn();
+		}
+		int entry = 0;
+		for (KeyValue kv : source) {
+			Key key = kv.getKey();
+			writeField(outs[ROW], key.getRowData(), prev, ROW);
+			writeField(outs[QUALIFIER], key.getColumnQualifierData(), prev, QUALIFIER);
+			if (families != null) {
+				families.add(key.getColumnFamilyData());
+				visibilities.add(key.getColumnVisibilityData());
+			} else {
+				writeField(outs[FAMILY], key.getColumnFamilyData(), prev, FAMILY);
+				writeField(outs[VISIBILITY], key.getColumnVisibilityData(), prev, VISIBILITY);
+			}
+			if (deltaEncoded) {
+				Varints.writeSignedLong(outs[TIMESTAMP], key.getTimestamp() - base);
+				if (key.isDeleted()) {
+					deleted[entry >>> 3] |= 1 << (entry & 7);
+				}
+			} else {
+				outs[TIMESTAMP].writeLong(key.getTimestamp());
+				outs[DELETE].writeBoolean(key.isDeleted());
+			}
+			if (!typedValues) {
+				Varints.writeUnsignedInt(outs[VALUE_LENGTH], kv.getValue().getSize());
+				outs[VALUE].write(kv.getValue().get(), 0, kv.getValue().getSize());
+			}
+			++entry;
+		}
+		if (typedValues) {
+			ValueEncoding.write(source, outs[VALUE]);
+		}
+		if (deltaEncoded) {
+			outs[DELETE].write(deleted);
+		}
+		if (families != null) {
+			families.writeTo(outs[FAMILY]);
+			visibilities.writeTo(outs[VISIBILITY]);
+		}
+
+		DataOutputStream out = new DataOutputStream(stream);
+		try {
+			out.writeInt(source.size());
+			for (int i = 0; i < NUM_COLUMNS; ++i) {
+				out.writeInt(columns[i].size());
+				columns[i].writeTo(out);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the stream into a single heap buffer and closes it.
+	 */
+	private static ByteBuffer readFully(InputStream in, int sizeHint) throws IOException {
+		ByteBufferOutputStream decompressed = new ByteBufferOutputStream(Math.max(sizeHint, BUFFER_SIZE), false);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				decompressed.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return decompressed.toByteBuffer();
+	}
+
+	private SlabBatch parse(ByteBuffer payload) throws IOException {
+		return parse(new ByteArrayReader(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+	}
+
+	private SlabBatch parse(ByteArrayReader in) throws IOException {
+		int size = in.readInt();
+		ByteArrayReader[] columns = new ByteArrayReader[NUM_COLUMNS];
+		for (int i = 0; i < NUM_COLUMNS; ++i) {
+			columns[i] = in.slice(in.readInt());
+		}
+
+		int[][] offsets = new int[SlabBatch.NUM_FIELDS][size];
+		int[][] lengths = new int[SlabBatch.NUM_FIELDS][size];
+		long[] timestamps = new long[size];
+		boolean[] deleted = new boolean[size];
+		boolean deltaEncoded = hasFeature(Feature.DELTA_TIMESTAMPS);
+		boolean typedValues = hasFeature(Feature.TYPED_VALUES);
+		long base = deltaEncoded ? columns[TIMESTAMP].readLong() : 0;
+		int bitmap = deltaEncoded ? columns[DELETE].skip(bitmapSize(size)) : 0;
+		int[][] families = null;
+		int[][] visibilities = null;
+		if (hasFeature(Feature.DICTIONARY)) {
+			families = readDictionary(columns[FAMILY]);
+			visibilities = readDictionary(columns[VISIBILITY]);
+		}
+		for (int i = 0; i < size; ++i) {
+			readField(columns[ROW], offsets[SlabBatch.ROW], lengths[SlabBatch.ROW], i);
+			readField(columns[FAMILY], families, offsets[SlabBatch.FAMILY], lengths[SlabBatch.FAMILY], i);
+			readField(columns[QUALIFIER], offsets[SlabBatch.QUALIFIER], lengths[SlabBatch.QUALIFIER], i);
+			readField(columns[VISIBILITY], visibilities, offsets[SlabBatch.VISIBILITY], lengths[SlabBatch.VISIBILITY], i);
+			if (deltaEncoded) {
+				timestamps[i] = base + Varints.unZigZag(columns[TIMESTAMP].readUnsignedVarlong());
+				deleted[i] = (in.array()[bitmap + (i >>> 3)] & (1 << (i & 7))) != 0;
+			} else {
+				timestamps[i] = columns[TIMESTAMP].readLong();
+				deleted[i] = columns[DELETE].readBoolean();
+			}
+			if (!typedValues) {
+				int valueLength = columns[VALUE_LENGTH].readUnsignedVarint();
+				offsets[SlabBatch.VALUE][i] = columns[VALUE].skip(valueLength);
+				lengths[SlabBatch.VALUE][i] = valueLength;
+			}
+		}
+		if (typedValues) {
+			byte[] values = ValueEncoding.read(columns[VALUE], size, offsets[SlabBatch.VALUE], lengths[SlabBatch.VALUE]);
+			return new SlabBatch(in.array(), values, size, offsets, lengths, timestamps, deleted);
+		}
+		return new SlabBatch(in.array(), size, offsets, lengths, timestamps, deleted);
+	}
+
+	private static long deltaTimestampsSize(List<? extends KeyValue> data) {
+		if (data.isEmpty()) {
+			return 0;
+		}
+		long base = data.get(0).getKey().getTimestamp();
+		long size = TIMESTAMP_SIZE;
+		for (KeyValue kv : data) {
+			size += Varints.sizeOfUnsignedLong(Varints.zigZag(kv.getKey().getTimestamp() - base));
+		}
+		return size;
+	}
+
+	private static int bitmapSize(int size) {
+		return (size + 7) >>> 3;
+	}
+
+	private static void writeField(DataOutputStream out, ByteSequence field, ByteSequence[] prev, int column) throws IOException {
+		if (field.equals(prev[column])) {
+			Varints.writeUnsignedInt(out, 0);
+		} else {
+			Varints.writeUnsignedInt(out, field.length() + 1);
+			out.write(field.getBackingArray(), field.offset(), field.length());
+			prev[column] = field;
+		}
+	}
+
+	private static void readField(ByteArrayReader in, int[] offsets, int[] lengths, int i) throws IOException {
+		int length = in.readUnsignedVarint();
+		if (length == 0) {
+			if (i == 0) {
+				throw new IOException("Field refers to a previous value that does not exist.");
+			}
+			offsets[i] = offsets[i - 1];
+			lengths[i] = lengths[i - 1];
+		} else {
+			lengths[i] = length - 1;
+			offsets[i] = in.skip(length - 1);
+		}
+	}
+
+	/**
+	 * Reads the mode of a dictionary encoded column, returning the offsets and
+	 * lengths of the dictionary entries, or null if the column is inline.
+	 */
+	private static int[][] readDictionary(ByteArrayReader in) throws IOException {
+		int mode = in.readByte();
+		if (mode == INLINE) {
+			return null;
+		} else if (mode != DICTIONARY) {
+			throw new IOException("Unexpected column mode " + mode);
+		}
+		int count = in.readUnsignedVarint();
+		int[][] dictionary = new int[2][count];
+		for (int id = 0; id < count; ++id) {
+			dictionary[1][id] = in.readUnsignedVarint();
+			dictionary[0][id] = in.skip(dictionary[1][id]);
+		}
+		return dictionary;
+	}
+
+	private static void readField(ByteArrayReader in, int[][] dictionary, int[] offsets, int[] lengths, int i) throws IOException {
+		if (dictionary == null) {
+			readField(in, offsets, lengths, i);
+			return;
+		}
+		int id = in.readUnsignedVarint();
+		if (id >= dictionary[0].length) {
+			throw new IOException("Field refers to a dictionary entry that does not exist.");
+		}
+		offsets[i] = dictionary[0][id];
+		lengths[i] = dictionary[1][id];
+	}
+
+	/**
+	 * Encodes one field both inline and as ids into a dictionary of its
+	 * distinct values, writing whichever is smaller preceded by a mode byte.
+	 * The dictionary is abandoned once the field has too many distinct values.
+	 */
+	private static class DictionaryColumn {
+
+		private final ByteArrayOutputStream inline = new ByteArrayOutputStream();
+		private final DataOutputStream inlineOut = new DataOutputStream(inline);
+		private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		private final DataOutputStream entriesOut = new DataOutputStream(entries);
+		private final ByteArrayOutputStream ids = new ByteArrayOutputStream();
+		private final DataOutputStream idsOut = new DataOutputStream(ids);
+		private final Map<ByteSequence, Integer> dictionary = new HashMap<ByteSequence, Integer>();
+		private final ByteSequence[] prev = new ByteSequence[1];
+		private boolean overflow = false;
+
+		void add(ByteSequence field) throws IOException {
+			writeField(inlineOut, field, prev, 0);
+			if (overflow) {
+				return;
+			}
+			Integer id = dictionary.get(field);
+			if (id == null) {
+				if (dictionary.size() == MAX_DICTIONARY_ENTRIES) {
+					overflow = true;
+					return;
+				}
+				id = dictionary.size();
+				dictionary.put(field, id);
+				Varints.writeUnsignedInt(entriesOut, field.length());
+				entriesOut.write(field.getBackingArray(), field.offset(), field.length());
+			}
+			Varints.writeUnsignedInt(idsOut, id);
+		}
+
+		int inlineSize() {
+			return inline.size();
+		}
+
+		/**
+		 * The number of bytes written by {@link #writeTo}, including the mode.
+		 */
+		int size() {
+			return 1 + (useDictionary() ? dictionarySize() : inline.size());
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			if (useDictionary()) {
+				out.writeByte(DICTIONARY);
+				Varints.writeUnsignedInt(out, dictionary.size());
+				entries.writeTo(out);
+				ids.writeTo(out);
+			} else {
+				out.writeByte(INLINE);
+				inline.writeTo(out);
+			}
+		}
+
+		private boolean useDictionary() {
+			return !overflow && dictionarySize() < inline.size();
+		}
+
+		private int dictionarySize() {
+			return Varints.sizeOfUnsignedLong(dictionary.size()) + entries.size() + ids.size();
+		}
+	}
+
+}
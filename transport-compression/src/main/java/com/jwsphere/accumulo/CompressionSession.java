@@ -0,0 +1,105 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+/**
+ * Compresses the consecutive batches of a single scan, allowing an encoding to
+ * carry state such as the last key or the compressor history from one batch
+ * to the next.  The client and server each hold their own session, and the
+ * batches must be decompressed in the order in which they were compressed.
+ * Sessions are not thread-safe and should be closed once the scan completes.
+ */
+public abstract class CompressionSession {
+
+	private final String name;
+	private final ByteBufferOutputStream buffer = new ByteBufferOutputStream();
+
+	protected CompressionSession(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Compresses the next batch of the session into the supplied buffer.  The
+	 * returned key-value pairs may be views of the buffer.
+	 */
+	public abstract List<TKeyValue> compress(List<? extends KeyValue> data, ByteBufferOutputStream buffer);
+
+	/**
+	 * Decompresses the next batch of the session lazily.  The iterator must be
+	 * drained before the following batch is decompressed.
+	 */
+	public abstract Iterator<KeyValue> decompressIterator(List<TKeyValue> data);
+
+	public List<TKeyValue> compress(List<? extends KeyValue> data) {
+		return compress(data, new ByteBufferOutputStream());
+	}
+
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		return Lists.newArrayList(decompressIterator(data));
+	}
+
+	/**
+	 * Compresses the next batch of the session, decompresses it again on the
+	 * decoding side of the same session and reports the size, the time spent
+	 * on each and whether the batch survived the round trip.  Since the
+	 * session state of each side depends on every earlier batch, a failed
+	 * round trip is likely to leave later batches unverified as well.
+	 */
+	public CompressionStatistics evaluate(List<? extends KeyValue> data) {
+		long uncompressedSize = TransportCompression.computeSize(TransportCompression.toThrift(data));
+		buffer.reset();
+		long allocated = Allocations.current();
+		long start = System.nanoTime();
+		List<TKeyValue> compressed = compress(data, buffer);
+		long encoded = System.nanoTime();
+		List<KeyValue> decompressed = new ArrayList<KeyValue>(data.size());
+		boolean verified = true;
+		try {
+			Iterators.addAll(decompressed, decompressIterator(compressed));
+		} catch (RuntimeException e) {
+			verified = false;
+		}
+		long decoded = System.nanoTime();
+		allocated = Allocations.since(allocated);
+		verified &= data.equals(decompressed);
+
+		long compressedSize = TransportCompression.computeSize(compressed);
+		return new CompressionStatistics(getName(), uncompressedSize, compressedSize, data.size())
+				.withTiming(encoded - start, decoded - encoded, allocated, verified);
+	}
+
+	/**
+	 * Releases any resources held by the session.
+	 */
+	public void close() {
+	}
+
+}
@@ -15,18 +15,73 @@
  */
 package com.jwsphere.accumulo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class CompressionStatistics {
 
+	/** Value of the timing and allocation figures when they were not measured. */
+	public static final long UNKNOWN = -1;
+
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final double BYTES_PER_MEGABYTE = 1e6;
+
 	private final String algorithm;
 	private final long uncompressed;
 	private final long compressed;
 	private final int batchSize;
+	private final List<FieldStatistics> fields;
+	private final long encodeNanos;
+	private final long decodeNanos;
+	private final long allocatedBytes;
+	private final boolean verified;
 	
 	public CompressionStatistics(String algorithm, long uncompressed, long compressed, int batchSize) {
+		this(algorithm, uncompressed, compressed, batchSize, Collections.<FieldStatistics> emptyList(),
+				UNKNOWN, UNKNOWN, UNKNOWN, false);
+	}
+
+	private CompressionStatistics(String algorithm, long uncompressed, long compressed, int batchSize,
+			List<FieldStatistics> fields, long encodeNanos, long decodeNanos, long allocatedBytes, boolean verified) {
 		this.uncompressed = uncompressed;
 		this.compressed = compressed;
 		this.algorithm = algorithm;
 		this.batchSize = batchSize;
+		this.fields = fields;
+		this.encodeNanos = encodeNanos;
+		this.decodeNanos = decodeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.verified = verified;
+	}
+
+	/**
+	 * Returns a copy of these statistics that additionally reports the time
+	 * spent compressing and decompressing the batch, the bytes allocated while
+	 * doing so, and whether the decompressed batch matched the original.
+	 */
+	public CompressionStatistics withTiming(long encodeNanos, long decodeNanos, long allocatedBytes, boolean verified) {
+		return new CompressionStatistics(algorithm, uncompressed, compressed, batchSize, fields,
+				encodeNanos, decodeNanos, allocatedBytes, verified);
+	}
+
+	/**
+	 * Returns a copy of these statistics that additionally reports the number
+	 * of bytes a single field costs under a baseline encoding and under the
+	 * encoding being evaluated.
+	 */
+	public CompressionStatistics withField(String field, long baseline, long encoded) {
+		List<FieldStatistics> copy = new ArrayList<FieldStatistics>(fields);
+		copy.add(new FieldStatistics(field, baseline, encoded));
+		return new CompressionStatistics(algorithm, uncompressed, compressed, batchSize,
+				Collections.unmodifiableList(copy), encodeNanos, decodeNanos, allocatedBytes, verified);
+	}
+
+	/**
+	 * Per-field byte counts reported by the encoding, if any.
+	 */
+	public List<FieldStatistics> getFields() {
+		return fields;
 	}
 	
 	/**
@@ -64,6 +119,103 @@ public class CompressionStatistics {
 	public double getSavingsPercentage() {
 		return 100 * (1.0 - (double) compressed / uncompressed);
 	}
+
+	/**
+	 * Whether the timing and allocation figures were measured.
+	 */
+	public boolean isTimed() {
+		return encodeNanos != UNKNOWN;
+	}
+
+	/**
+	 * Nanoseconds spent compressing the batch, or {@link #UNKNOWN}.
+	 */
+	public long getEncodeNanos() {
+		return encodeNanos;
+	}
+
+	/**
+	 * Nanoseconds spent decompressing the batch, or {@link #UNKNOWN}.
+	 */
+	public long getDecodeNanos() {
+		return decodeNanos;
+	}
+
+	/**
+	 * Bytes allocated while compressing and decompressing the batch, or
+	 * {@link #UNKNOWN} if the JVM cannot report allocations.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Whether decompressing the compressed batch reproduced the original.
+	 */
+	public boolean isRoundtripVerified() {
+		return verified;
+	}
+
+	/**
+	 * Uncompressed megabytes compressed per second.
+	 */
+	public double getEncodeThroughput() {
+		return throughput(encodeNanos);
+	}
+
+	/**
+	 * Uncompressed megabytes decompressed per second.
+	 */
+	public double getDecodeThroughput() {
+		return throughput(decodeNanos);
+	}
+
+	/**
+	 * Nanoseconds needed to send the uncompressed batch over a link with the
+	 * given bandwidth.
+	 */
+	public double getUncompressedTransferNanos(double gigabitsPerSecond) {
+		// a gigabit per second transfers one bit per nanosecond
+		return uncompressed * 8 / gigabitsPerSecond;
+	}
+
+	/**
+	 * Nanoseconds needed to compress the batch, send it over a link with the
+	 * given bandwidth and decompress it.
+	 */
+	public double getEffectiveTransferNanos(double gigabitsPerSecond) {
+		return encodeNanos + compressed * 8 / gigabitsPerSecond + decodeNanos;
+	}
+
+	/**
+	 * How many times faster the batch arrives compressed than uncompressed over
+	 * a link with the given bandwidth.  Values below one mean compression
+	 * costs more time than it saves.
+	 */
+	public double getTransferSpeedup(double gigabitsPerSecond) {
+		return getUncompressedTransferNanos(gigabitsPerSecond) / getEffectiveTransferNanos(gigabitsPerSecond);
+	}
+
+	private double throughput(long nanos) {
+		return uncompressed / BYTES_PER_MEGABYTE / (Math.max(nanos, 1) / NANOS_PER_SECOND);
+	}
+
+	/**
+	 * Formats the statistics along with the effective transfer time over a
+	 * link with the given bandwidth.
+	 */
+	public String toString(double gigabitsPerSecond) {
+		StringBuilder sb = new StringBuilder(toString());
+		if (isTimed()) {
+			String link = "@" + gigabitsPerSecond + "Gbps";
+			sb.append(String.format("%-18s: %.1f us", "raw transfer" + link,
+					getUncompressedTransferNanos(gigabitsPerSecond) / 1000)).append('\n');
+			sb.append(String.format("%-18s: %.1f us", "eff transfer" + link,
+					getEffectiveTransferNanos(gigabitsPerSecond) / 1000)).append('\n');
+			sb.append(String.format("%-18s: %.2f", "speedup" + link, getTransferSpeedup(gigabitsPerSecond))).append('\n');
+		}
+		return sb.toString();
+	}
 	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -74,6 +226,52 @@ public class CompressionStatistics {
 		sb.append("compression ratio : ").append(getCompressionRatio()).append('\n');
 		sb.append("data savings pct  : ").append(getSavingsPercentage()).append('\n');
 		sb.append("size per element  : ").append((double) compressed / batchSize).append('\n');
+		for (FieldStatistics field : fields) {
+			sb.append(String.format("%-18s: %d -> %d", field.getField() + " bytes", field.getBaseline(),
+					field.getEncoded())).append('\n');
+		}
+		if (isTimed()) {
+			sb.append(String.format("%-18s: %.1f us (%.1f MB/s)", "encode time", encodeNanos / 1000.0,
+					getEncodeThroughput())).append('\n');
+			sb.append(String.format("%-18s: %.1f us (%.1f MB/s)", "decode time", decodeNanos / 1000.0,
+					getDecodeThroughput())).append('\n');
+			sb.append("allocated bytes   : ").append(allocatedBytes == UNKNOWN ? "unknown" : String.valueOf(allocatedBytes)).append('\n');
+			sb.append("roundtrip         : ").append(verified ? "ok" : "FAILED").append('\n');
+		}
 		return sb.toString();
 	}
+
+	/**
+	 * The bytes spent on one field of the batch before any codec is applied.
+	 */
+	public static class FieldStatistics {
+
+		private final String field;
+		private final long baseline;
+		private final long encoded;
+
+		public FieldStatistics(String field, long baseline, long encoded) {
+			this.field = field;
+			this.baseline = baseline;
+			this.encoded = encoded;
+		}
+
+		public String getField() {
+			return field;
+		}
+
+		/**
+		 * Number of bytes spent on the field by the baseline encoding.
+		 */
+		public long getBaseline() {
+			return baseline;
+		}
+
+		/**
+		 * Number of bytes spent on the field by the encoding being evaluated.
+		 */
+		public long getEncoded() {
+			return encoded;
+		}
+	}
 }
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Accumulates the statistics of every batch evaluated with one compression
+ * algorithm so that a whole scan can be summarized by its totals and by
+ * percentiles of the per-batch compression ratio and encode time.  The
+ * percentiles are computed from a fixed-size uniform sample of the batches,
+ * so a summary of any number of batches uses bounded memory, and they are
+ * exact as long as the scan has no more batches than the sample holds.
+ */
+public class CompressionSummary {
+
+	private final String algorithm;
+	private long batches;
+	private long entries;
+	private long uncompressed;
+	private long compressed;
+	private long encodeNanos;
+	private long decodeNanos;
+	private long failures;
+	private boolean timed;
+	private final Reservoir ratios = new Reservoir();
+	private final Reservoir encodeTimes = new Reservoir();
+
+	public CompressionSummary(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public void add(CompressionStatistics stats) {
+		ratios.add(stats.getCompressionRatio());
+		++batches;
+		entries += stats.getBatchSize();
+		uncompressed += stats.getUncompressedSize();
+		compressed += stats.getCompressedSize();
+		if (stats.isTimed()) {
+			timed = true;
+			encodeTimes.add(stats.getEncodeNanos());
+			encodeNanos += stats.getEncodeNanos();
+			decodeNanos += stats.getDecodeNanos();
+			if (!stats.isRoundtripVerified()) {
+				++failures;
+			}
+		}
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public long getUncompressedSize() {
+		return uncompressed;
+	}
+
+	public long getCompressedSize() {
+		return compressed;
+	}
+
+	public long getEncodeNanos() {
+		return encodeNanos;
+	}
+
+	public long getDecodeNanos() {
+		return decodeNanos;
+	}
+
+	/**
+	 * Whether the timing figures of the batches were measured.
+	 */
+	public boolean isTimed() {
+		return timed;
+	}
+
+	/**
+	 * Number of batches that did not decompress to the original.
+	 */
+	public long getRoundtripFailures() {
+		return failures;
+	}
+
+	/**
+	 * The ratio of all uncompressed bytes to all compressed bytes.
+	 */
+	public double getCompressionRatio() {
+		return (double) uncompressed / compressed;
+	}
+
+	/**
+	 * The per-batch compression ratio at the given percentile, between 0 and 100.
+	 */
+	public double getRatioPercentile(double percentile) {
+		return ratios.percentile(percentile);
+	}
+
+	/**
+	 * The per-batch encode time in nanoseconds at the given percentile,
+	 * between 0 and 100, over the timed batches.
+	 */
+	public double getEncodeNanosPercentile(double percentile) {
+		return encodeTimes.percentile(percentile);
+	}
+
+	/**
+	 * Nanoseconds needed to compress, send and decompress every batch over a
+	 * link with the given bandwidth.
+	 */
+	public double getEffectiveTransferNanos(double gigabitsPerSecond) {
+		return encodeNanos + compressed * 8 / gigabitsPerSecond + decodeNanos;
+	}
+
+	/**
+	 * How many times faster the scan arrives compressed than uncompressed over
+	 * a link with the given bandwidth.
+	 */
+	public double getTransferSpeedup(double gigabitsPerSecond) {
+		return uncompressed * 8 / gigabitsPerSecond / getEffectiveTransferNanos(gigabitsPerSecond);
+	}
+
+
+	/**
+	 * Orders the summaries from the fastest to the slowest effective transfer
+	 * over a link with the given bandwidth.  Algorithms without timing figures
+	 * are ranked after the timed ones, and algorithms that failed to reproduce
+	 * any batch are ranked last.
+	 */
+	public static List<CompressionSummary> rank(Collection<CompressionSummary> summaries, final double gigabitsPerSecond) {
+		List<CompressionSummary> ranked = new ArrayList<CompressionSummary>(summaries);
+		Collections.sort(ranked, new Comparator<CompressionSummary>() {
+			public int compare(CompressionSummary a, CompressionSummary b) {
+				int tiers = tier(a) - tier(b);
+				if (tiers != 0) {
+					return tiers;
+				}
+				return Double.compare(a.getEffectiveTransferNanos(gigabitsPerSecond),
+						b.getEffectiveTransferNanos(gigabitsPerSecond));
+			}
+		});
+		return ranked;
+	}
+
+	private static int tier(CompressionSummary summary) {
+		if (summary.getRoundtripFailures() > 0) {
+			return 2;
+		}
+		return summary.isTimed() ? 0 : 1;
+	}
+
+	/**
+	 * Accumulates the statistics of every evaluated batch per algorithm, and
+	 * formats the totals followed by the algorithms ranked by effective
+	 * transfer time.
+	 */
+	public static List<String> report(String title, Iterator<List<CompressionStatistics>> evaluated, double bandwidth) {
+		Map<String, CompressionSummary> summaries = new LinkedHashMap<String, CompressionSummary>();
+		while (evaluated.hasNext()) {
+			for (CompressionStatistics stats : evaluated.next()) {
+				CompressionSummary summary = summaries.get(stats.getAlgorithm());
+				if (summary == null) {
+					summary = new CompressionSummary(stats.getAlgorithm());
+					summaries.put(stats.getAlgorithm(), summary);
+				}
+				summary.add(stats);
+			}
+		}
+
+		List<String> lines = new ArrayList<String>();
+		lines.add("============ " + title + " compression summary =================");
+		for (CompressionSummary summary : summaries.values()) {
+			lines.add(summary.toString(bandwidth));
+		}
+		lines.add("============ Ranked by effective transfer @" + bandwidth + "Gbps ====");
+		int rank = 0;
+		for (CompressionSummary summary : CompressionSummary.rank(summaries.values(), bandwidth)) {
+			lines.add(String.format("%2d. %-60s %10.1f ms  ratio %.3f%s", ++rank, summary.getAlgorithm(),
+					summary.getEffectiveTransferNanos(bandwidth) / 1e6, summary.getCompressionRatio(),
+					summary.getRoundtripFailures() > 0 ? "  (roundtrip failures)" : ""));
+		}
+		if (rank > 0) {
+			lines.add("recommendation : " + CompressionSummary.rank(summaries.values(), bandwidth).get(0).getAlgorithm());
+		}
+		lines.add("=======================================================");
+		return lines;
+	}
+
+	/**
+	 * Formats the summary along with the effective transfer time over a link
+	 * with the given bandwidth.
+	 */
+	public String toString(double gigabitsPerSecond) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("algorithm : ").append(algorithm).append('\n');
+		sb.append("batches           : ").append(batches).append('\n');
+		sb.append("entries           : ").append(entries).append('\n');
+		sb.append("uncompressed size : ").append(uncompressed).append('\n');
+		sb.append("compressed size   : ").append(compressed).append('\n');
+		sb.append("compression ratio : ").append(getCompressionRatio()).append('\n');
+		sb.append(String.format("ratio p50/p95/p99 : %.3f / %.3f / %.3f", getRatioPercentile(50),
+				getRatioPercentile(95), getRatioPercentile(99))).append('\n');
+		sb.append(String.format("encode p50/p95/p99: %.1f / %.1f / %.1f us", getEncodeNanosPercentile(50) / 1000,
+				getEncodeNanosPercentile(95) / 1000, getEncodeNanosPercentile(99) / 1000)).append('\n');
+		sb.append(String.format("encode total      : %.1f ms", encodeNanos / 1e6)).append('\n');
+		sb.append(String.format("decode total      : %.1f ms", decodeNanos / 1e6)).append('\n');
+		sb.append(String.format("eff transfer      : %.1f ms @%sGbps (speedup %.2f)",
+				getEffectiveTransferNanos(gigabitsPerSecond) / 1e6, gigabitsPerSecond,
+				getTransferSpeedup(gigabitsPerSecond))).append('\n');
+		sb.append("roundtrip failures: ").append(failures).append('\n');
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toString(1);
+	}
+
+	/**
+	 * A uniform sample of at most {@link #CAPACITY} values, kept by reservoir
+	 * sampling.
+	 */
+	private static class Reservoir {
+
+		private static final int CAPACITY = 4096;
+
+		private final double[] samples = new double[CAPACITY];
+		private final Random random = new Random();
+		private long seen;
+
+		void add(double value) {
+			if (seen < CAPACITY) {
+				samples[(int) seen] = value;
+			} else {
+				long slot = (long) (random.nextDouble() * (seen + 1));
+				if (slot < CAPACITY) {
+					samples[(int) slot] = value;
+				}
+			}
+			++seen;
+		}
+
+		double percentile(double percentile) {
+			if (seen == 0) {
+				return Double.NaN;
+			}
+			double[] sorted = Arrays.copyOf(samples, (int) Math.min(seen, CAPACITY));
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+/**
+ * Columnar encoding followed by a deflate pass over the concatenated columns.
+ * Since each column holds values of a single field, the entropy coder sees
+ * runs of similar bytes rather than an interleaving of every key component.
+ */
+public class DeflatedColumnarTransportCompression extends ColumnarTransportCompression {
+
+	public DeflatedColumnarTransportCompression() {
+		super(DeflateCodec.DEFAULT);
+	}
+
+	@Override
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+}
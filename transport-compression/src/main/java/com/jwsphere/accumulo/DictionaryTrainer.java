@@ -0,0 +1,226 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+/**
+ * Builds a preset deflate dictionary from sampled batches.  Each sample is
+ * encoded with an uncompressed transport encoding, e.g. a
+ * {@link RelativeKeyTransportCompression} without a codec, so that the
+ * dictionary resembles the bytes the deflater will actually see.
+ *
+ * <p>
+ * Every distinct sequence of {@code K} bytes is counted once per sample.
+ * Fixed size segments of the samples are then chosen greedily by the total
+ * count of the sequences they contain that are not already covered by a
+ * chosen segment.  The most valuable segments are placed at the end of the
+ * dictionary where deflate can reference them with the shortest distances.
+ * </p>
+ */
+public class DictionaryTrainer {
+
+	private static final int K = 8;
+	private static final int SEGMENT_SIZE = 64;
+
+	private final TransportCompression encoding;
+	private final int dictionarySize;
+	private final int maxSampleBytes;
+	private final List<byte[]> samples = new ArrayList<byte[]>();
+	private long sampleBytes;
+
+	public DictionaryTrainer(TransportCompression encoding) {
+		this(encoding, DeflateCodec.MAX_DICTIONARY_SIZE);
+	}
+
+	public DictionaryTrainer(TransportCompression encoding, int dictionarySize) {
+		if (dictionarySize <= 0 || dictionarySize > DeflateCodec.MAX_DICTIONARY_SIZE) {
+			throw new IllegalArgumentException("Dictionary size must be between 1 and " + DeflateCodec.MAX_DICTIONARY_SIZE);
+		}
+		this.encoding = encoding;
+		this.dictionarySize = dictionarySize;
+		this.maxSampleBytes = 100 * dictionarySize;
+	}
+
+	/**
+	 * Adds a batch to the training set.  Returns false once enough sample data
+	 * has been collected and the batch was ignored.
+	 */
+	public boolean addSample(List<? extends KeyValue> batch) {
+		if (sampleBytes >= maxSampleBytes) {
+			return false;
+		}
+		byte[] sample = encode(batch);
+		samples.add(sample);
+		sampleBytes += sample.length;
+		return true;
+	}
+
+	public int getSampleCount() {
+		return samples.size();
+	}
+
+	public long getSampleBytes() {
+		return sampleBytes;
+	}
+
+	/**
+	 * Builds the dictionary from the samples added so far.
+	 */
+	public byte[] train() {
+		Map<Long, Integer> counts = countSequences();
+
+		PriorityQueue<Segment> candidates = new PriorityQueue<Segment>();
+		for (int s = 0; s < samples.size(); ++s) {
+			byte[] sample = samples.get(s);
+			for (int offset = 0; offset + K <= sample.length; offset += SEGMENT_SIZE / 2) {
+				Segment segment = new Segment(s, offset, Math.min(SEGMENT_SIZE, sample.length - offset));
+				segment.score = score(segment, counts, null);
+				if (segment.score > 0) {
+					candidates.add(segment);
+				}
+			}
+		}
+
+		Set<Long> covered = new HashSet<Long>();
+		List<Segment> chosen = new ArrayList<Segment>();
+		int size = 0;
+		while (size < dictionarySize && !candidates.isEmpty()) {
+			Segment best = candidates.poll();
+			// scores only decrease as sequences are covered so they are recomputed lazily
+			long score = score(best, counts, covered);
+			if (score <= 0) {
+				continue;
+			}
+			if (!candidates.isEmpty() && score < candidates.peek().score) {
+				best.score = score;
+				candidates.add(best);
+				continue;
+			}
+			byte[] sample = samples.get(best.sample);
+			for (int i = best.offset; i + K <= best.offset + best.length; ++i) {
+				covered.add(sequence(sample, i));
+			}
+			chosen.add(best);
+			size += best.length;
+		}
+
+		// least valuable first so the best segments end up closest to the data
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+		for (int i = chosen.size() - 1; i >= 0; --i) {
+			Segment segment = chosen.get(i);
+			dictionary.write(samples.get(segment.sample), segment.offset, segment.length);
+		}
+		byte[] bytes = dictionary.toByteArray();
+		if (bytes.length > dictionarySize) {
+			byte[] truncated = new byte[dictionarySize];
+			System.arraycopy(bytes, bytes.length - dictionarySize, truncated, 0, dictionarySize);
+			return truncated;
+		}
+		return bytes;
+	}
+
+	private byte[] encode(List<? extends KeyValue> batch) {
+		List<TKeyValue> encoded = encoding.compress(batch);
+		try {
+			InputStream in = TransportCompression.singletonInput(encoded);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Map<Long, Integer> countSequences() {
+		Map<Long, Integer> counts = new HashMap<Long, Integer>();
+		Set<Long> seen = new HashSet<Long>();
+		for (byte[] sample : samples) {
+			seen.clear();
+			for (int i = 0; i + K <= sample.length; ++i) {
+				Long sequence = sequence(sample, i);
+				if (seen.add(sequence)) {
+					Integer count = counts.get(sequence);
+					counts.put(sequence, count == null ? 1 : count + 1);
+				}
+			}
+		}
+		return counts;
+	}
+
+	private long score(Segment segment, Map<Long, Integer> counts, Set<Long> covered) {
+		byte[] sample = samples.get(segment.sample);
+		long score = 0;
+		Set<Long> counted = new HashSet<Long>();
+		for (int i = segment.offset; i + K <= segment.offset + segment.length; ++i) {
+			Long sequence = sequence(sample, i);
+			if ((covered == null || !covered.contains(sequence)) && counted.add(sequence)) {
+				int count = counts.get(sequence);
+				// sequences seen in a single sample are unlikely to recur
+				if (count > 1) {
+					score += count;
+				}
+			}
+		}
+		return score;
+	}
+
+	private static long sequence(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < K; ++i) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+	private static class Segment implements Comparable<Segment> {
+
+		final int sample;
+		final int offset;
+		final int length;
+		long score;
+
+		Segment(int sample, int offset, int length) {
+			this.sample = sample;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public int compareTo(Segment other) {
+			// highest score first
+			return score > other.score ? -1 : (score < other.score ? 1 : 0);
+		}
+	}
+
+}
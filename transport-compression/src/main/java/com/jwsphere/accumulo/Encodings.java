@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jwsphere.accumulo.AdaptiveTransportCompression.Objective;
+import com.jwsphere.accumulo.ColumnarTransportCompression.Feature;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+
+/**
+ * Creates encodings by name so that both ends of a scan can be configured
+ * from the same strings.  The names are : <br>
+ *
+ *   relativekey - {@link RelativeKeyTransportCompression} <br>
+ *   columnar - {@link ColumnarTransportCompression} <br>
+ *   columnar-dict - columnar with delta timestamps and dictionaries <br>
+ *   columnar-typed - columnar-dict with typed values <br>
+ *   thrift - {@link CodecTransportCompression} <br>
+ *   adaptive - {@link AdaptiveTransportCompression} minimizing bytes, ignoring the codec <br>
+ *   framed - {@link FramedTransportCompression} of checksummed columnar blocks <br>
+ *   frontcoded - {@link FrontCodedTransportCompression} <br>
+ */
+public final class Encodings {
+
+	private Encodings() {
+	}
+
+	public static TransportCompression forName(String encoding, Codec codec) {
+		if (encoding.equals("relativekey")) {
+			return new RelativeKeyTransportCompression(codec);
+		} else if (encoding.equals("columnar")) {
+			return new ColumnarTransportCompression(codec);
+		} else if (encoding.equals("columnar-dict")) {
+			return new ColumnarTransportCompression(codec, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY);
+		} else if (encoding.equals("columnar-typed")) {
+			return new ColumnarTransportCompression(codec, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY,
+					Feature.TYPED_VALUES);
+		} else if (encoding.equals("thrift")) {
+			return new CodecTransportCompression(codec);
+		} else if (encoding.equals("adaptive")) {
+			return new AdaptiveTransportCompression(Objective.bytes());
+		} else if (encoding.equals("framed")) {
+			return new FramedTransportCompression(new ColumnarTransportCompression(codec));
+		} else if (encoding.equals("frontcoded")) {
+			return new FrontCodedTransportCompression(codec);
+		}
+		throw new IllegalArgumentException("Unknown encoding " + encoding);
+	}
+
+	/**
+	 * The encodings evaluated by the analyzer, followed by the thrift,
+	 * relative key, front coded and columnar encodings with each of the
+	 * additional codecs.
+	 * The latency-minimizing adaptive encoding assumes the given bandwidth.
+	 */
+	public static List<TransportCompression> standard(double gigabitsPerSecond, List<Codec> codecs) {
+		List<TransportCompression> compressions = new ArrayList<TransportCompression>();
+		compressions.add(new DefaultTransportCompression());
+		compressions.add(new DeflateTransportCompression());
+		compressions.add(new RelativeKeyTransportCompression());
+		compressions.add(new DeflatedRelativeKeyTransportCompression());
+		compressions.add(new FrontCodedTransportCompression());
+		compressions.add(new FrontCodedTransportCompression(DeflateCodec.DEFAULT));
+		compressions.add(new ColumnarTransportCompression());
+		compressions.add(new DeflatedColumnarTransportCompression());
+		compressions.add(new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DELTA_TIMESTAMPS));
+		compressions.add(new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS));
+		compressions.add(new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY));
+		compressions.add(new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY));
+		compressions.add(new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY,
+				Feature.TYPED_VALUES));
+		compressions.add(new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.DELTA_TIMESTAMPS, Feature.DICTIONARY,
+				Feature.TYPED_VALUES));
+		compressions.add(new AdaptiveTransportCompression(Objective.bytes()));
+		compressions.add(new AdaptiveTransportCompression(Objective.latency(gigabitsPerSecond)));
+		compressions.add(new FramedTransportCompression(new ColumnarTransportCompression(DeflateCodec.DEFAULT)));
+		for (Codec codec : codecs) {
+			compressions.add(new CodecTransportCompression(codec));
+			compressions.add(new RelativeKeyTransportCompression(codec));
+			compressions.add(new FrontCodedTransportCompression(codec));
+			compressions.add(new ColumnarTransportCompression(codec));
+		}
+		return compressions;
+	}
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * <p>
+ * Breaks the bytes of the scanned entries down by field to show which field
+ * drives the payload size and which specialized encoding would pay off.  For
+ * each field it accumulates : <br>
+ *
+ *   raw - the bytes of the field, eight per timestamp <br>
+ *   relative - the bytes after prefix encoding against the previous entry of
+ *   the batch, as the shared length and the suffix, or as a zigzag varint
+ *   delta for timestamps; values are left as is <br>
+ *   distinct - the number of distinct values, counted exactly up to
+ *   {@value #MAX_TRACKED_DISTINCT} <br>
+ *   entropy - the order-0 entropy of the raw bytes in bits per byte, and the
+ *   size an entropy coder would approach <br>
+ *
+ * </p>
+ *
+ * <p>
+ * Relative encoding restarts with each batch, as it does in the encodings.
+ * Distinct values are tracked by a 64-bit hash, so the count may in rare cases
+ * be slightly low.
+ * </p>
+ */
+public class FieldBreakdown {
+
+	public static final int MAX_TRACKED_DISTINCT = 1 << 16;
+
+	public enum Field {
+		ROW("row"), FAMILY("family"), QUALIFIER("qualifier"), VISIBILITY("visibility"), TIMESTAMP("timestamp"), VALUE("value");
+
+		private final String label;
+
+		private Field(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private final Map<Field, FieldSummary> summaries = new EnumMap<Field, FieldSummary>(Field.class);
+	private long batches;
+	private long entries;
+
+	public FieldBreakdown() {
+		for (Field field : Field.values()) {
+			summaries.put(field, new FieldSummary(field));
+		}
+	}
+
+	public void add(List<? extends KeyValue> batch) {
+		ByteSequence[] prev = new ByteSequence[Field.values().length];
+		long prevTimestamp = 0;
+		for (int i = 0; i < batch.size(); ++i) {
+			Key key = batch.get(i).getKey();
+			Value value = batch.get(i).getValue();
+			addBytes(Field.ROW, key.getRowData(), prev);
+			addBytes(Field.FAMILY, key.getColumnFamilyData(), prev);
+			addBytes(Field.QUALIFIER, key.getColumnQualifierData(), prev);
+			addBytes(Field.VISIBILITY, key.getColumnVisibilityData(), prev);
+			long timestamp = key.getTimestamp();
+			long delta = i == 0 ? timestamp : timestamp - prevTimestamp;
+			summaries.get(Field.TIMESTAMP).addTimestamp(timestamp, Varints.sizeOfUnsignedLong(Varints.zigZag(delta)));
+			prevTimestamp = timestamp;
+			summaries.get(Field.VALUE).add(value.get(), 0, value.getSize(), -1);
+		}
+		++batches;
+		entries += batch.size();
+	}
+
+	private void addBytes(Field field, ByteSequence bytes, ByteSequence[] prev) {
+		ByteSequence previous = prev[field.ordinal()];
+		int shared = previous == null ? 0 : sharedPrefix(previous, bytes);
+		int relative = Varints.sizeOfUnsignedLong(shared) + Varints.sizeOfUnsignedLong(bytes.length() - shared)
+				+ bytes.length() - shared;
+		summaries.get(field).add(bytes.getBackingArray(), bytes.offset(), bytes.length(), relative);
+		prev[field.ordinal()] = bytes;
+	}
+
+	private static int sharedPrefix(ByteSequence a, ByteSequence b) {
+		int max = Math.min(a.length(), b.length());
+		int shared = 0;
+		while (shared < max && a.byteAt(shared) == b.byteAt(shared)) {
+			++shared;
+		}
+		return shared;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public FieldSummary getField(Field field) {
+		return summaries.get(field);
+	}
+
+	public List<FieldSummary> getFields() {
+		return Collections.unmodifiableList(new ArrayList<FieldSummary>(summaries.values()));
+	}
+
+	/**
+	 * Formats one line per field with the raw and relative bytes, the distinct
+	 * count and the entropy, along with each field's share of the raw bytes.
+	 */
+	public List<String> report() {
+		long total = 0;
+		for (FieldSummary summary : summaries.values()) {
+			total += summary.getRawBytes();
+		}
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("%d entries in %d batches", entries, batches));
+		lines.add(String.format("%-10s %14s %6s %14s %10s %9s %14s", "field", "raw", "share", "relative", "distinct",
+				"bits/byte", "entropy bytes"));
+		for (FieldSummary summary : summaries.values()) {
+			lines.add(String.format("%-10s %14d %5.1f%% %14d %10s %9.3f %14d", summary.getField().getLabel(),
+					summary.getRawBytes(), total == 0 ? 0.0 : 100.0 * summary.getRawBytes() / total,
+					summary.getRelativeBytes(),
+					(summary.isDistinctSaturated() ? ">=" : "") + summary.getDistinct(),
+					summary.getEntropy(), summary.getEntropyBytes()));
+		}
+		return lines;
+	}
+
+	/**
+	 * The accumulated figures of one field.
+	 */
+	public static class FieldSummary {
+
+		private final Field field;
+		private final long[] histogram = new long[256];
+		private final Set<Long> hashes = new HashSet<Long>();
+		private boolean saturated = false;
+		private long rawBytes;
+		private long relativeBytes;
+
+		FieldSummary(Field field) {
+			this.field = field;
+		}
+
+		/**
+		 * Adds a value, where {@code relative} is its prefix encoded size or
+		 * -1 when the field is not prefix encoded.
+		 */
+		void add(byte[] bytes, int offset, int length, int relative) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = offset; i < offset + length; ++i) {
+				++histogram[bytes[i] & 0xFF];
+				hash = (hash ^ (bytes[i] & 0xFF)) * 0x100000001b3L;
+			}
+			rawBytes += length;
+			relativeBytes += relative < 0 ? length : relative;
+			track(hash ^ length);
+		}
+
+		void addTimestamp(long timestamp, int relative) {
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				++histogram[(int) (timestamp >>> shift) & 0xFF];
+			}
+			rawBytes += 8;
+			relativeBytes += relative;
+			track(timestamp);
+		}
+
+		private void track(long hash) {
+			if (hashes.size() < MAX_TRACKED_DISTINCT) {
+				hashes.add(hash);
+			} else if (!hashes.contains(hash)) {
+				saturated = true;
+			}
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public long getRawBytes() {
+			return rawBytes;
+		}
+
+		public long getRelativeBytes() {
+			return relativeBytes;
+		}
+
+		public long getDistinct() {
+			return hashes.size();
+		}
+
+		/**
+		 * Whether more distinct values were seen than are tracked, in which
+		 * case {@link #getDistinct()} is a lower bound.
+		 */
+		public boolean isDistinctSaturated() {
+			return saturated;
+		}
+
+		/**
+		 * The order-0 entropy of the raw bytes in bits per byte.
+		 */
+		public double getEntropy() {
+			if (rawBytes == 0) {
+				return 0;
+			}
+			double entropy = 0;
+			for (long count : histogram) {
+				if (count > 0) {
+					double p = (double) count / rawBytes;
+					entropy -= p * Math.log(p) / Math.log(2);
+				}
+			}
+			return entropy;
+		}
+
+		/**
+		 * The number of bytes an order-0 entropy coder would approach.
+		 */
+		public long getEntropyBytes() {
+			return (long) Math.ceil(getEntropy() * rawBytes / 8);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKey;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.io.ByteBufferInputStream;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * <p>
+ * Splits a batch into blocks of a fixed number of entries, compresses each
+ * block independently with another encoding and stores the blocks in a framed
+ * payload : <br>
+ *
+ *   version - one byte, currently {@value #VERSION} <br>
+ *   encoding - the name of the block encoding, including its codec <br>
+ *   block count - varint <br>
+ *   index - for each block its first key, entry count, length and CRC32 <br>
+ *   header CRC32 - of the version, encoding, block count and index <br>
+ *   blocks - the compressed blocks in order <br>
+ *
+ * </p>
+ *
+ * <p>
+ * Decoding verifies the version, the encoding, the checksum of the header
+ * and index, and the checksum of every block it reads.  A decoded block must
+ * start with the first key recorded in the index and hold its entry count.  The index allows {@link #decompressFrom} to skip the blocks
+ * preceding a key and {@link #decompress(List, ExecutorService)} to decode
+ * blocks in parallel.  The block encoding must produce a singleton
+ * collection, which rules out the default encoding.
+ * </p>
+ */
+public class FramedTransportCompression extends TransportCompression {
+
+	public static final int VERSION = 2;
+	public static final int DEFAULT_BLOCK_SIZE = 128;
+
+	private final TransportCompression blockEncoding;
+	private final int blockSize;
+
+	public FramedTransportCompression(TransportCompression blockEncoding) {
+		this(blockEncoding, DEFAULT_BLOCK_SIZE);
+	}
+
+	public FramedTransportCompression(TransportCompression blockEncoding, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive.");
+		}
+		this.blockEncoding = blockEncoding;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + blockEncoding.getName() + "," + blockSize + "]";
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> data) {
+		return compress(data, new ByteBufferOutputStream());
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> data, ByteBufferOutputStream buffer) {
+		List<ByteBuffer> payloads = new ArrayList<ByteBuffer>();
+		try {
+			CRC32 headerCrc = new CRC32();
+			DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffer, headerCrc));
+			out.writeByte(VERSION);
+			out.writeUTF(blockEncoding.getName());
+			int blocks = (data.size() + blockSize - 1) / blockSize;
+			Varints.writeUnsignedInt(out, blocks);
+			for (int start = 0; start < data.size(); start += blockSize) {
+				List<? extends KeyValue> block = data.subList(start, Math.min(start + blockSize, data.size()));
+				ByteBuffer payload = singletonValue(blockEncoding.compress(block));
+				payloads.add(payload);
+				block.get(0).getKey().write(out);
+				Varints.writeUnsignedInt(out, block.size());
+				Varints.writeUnsignedInt(out, payload.remaining());
+				out.writeInt(checksum(payload));
+			}
+			out.flush();
+			new DataOutputStream(buffer).writeInt((int) headerCrc.getValue());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (ByteBuffer payload : payloads) {
+			buffer.write(payload);
+		}
+		return singleton(buffer);
+	}
+
+	@Override
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		List<KeyValue> results = new ArrayList<KeyValue>();
+		for (Block block : readIndex(data)) {
+			results.addAll(block.decode());
+		}
+		return results;
+	}
+
+	/**
+	 * Decompresses the blocks on the executor, returning the entries in order.
+	 */
+	public List<KeyValue> decompress(List<TKeyValue> data, ExecutorService executor) {
+		List<Future<List<KeyValue>>> futures = new ArrayList<Future<List<KeyValue>>>();
+		for (final Block block : readIndex(data)) {
+			futures.add(executor.submit(new Callable<List<KeyValue>>() {
+				public List<KeyValue> call() {
+					return block.decode();
+				}
+			}));
+		}
+		List<KeyValue> results = new ArrayList<KeyValue>();
+		try {
+			for (Future<List<KeyValue>> future : futures) {
+				results.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Decodes one block at a time as the iterator is advanced.
+	 */
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		return decode(readIndex(data).iterator(), null);
+	}
+
+	/**
+	 * Returns the entries with keys at or after {@code start}, decoding only
+	 * the blocks that may contain them.
+	 */
+	public Iterator<KeyValue> decompressFrom(List<TKeyValue> data, Key start) {
+		List<Block> blocks = readIndex(data);
+		int first = 0;
+		while (first + 1 < blocks.size() && blocks.get(first + 1).firstKey.compareTo(start) <= 0) {
+			++first;
+		}
+		return decode(blocks.subList(first, blocks.size()).iterator(), start);
+	}
+
+	private static Iterator<KeyValue> decode(final Iterator<Block> blocks, final Key start) {
+		return new AbstractIterator<KeyValue>() {
+
+			private Iterator<KeyValue> block;
+
+			@Override
+			protected KeyValue computeNext() {
+				while (true) {
+					while (block == null || !block.hasNext()) {
+						if (!blocks.hasNext()) {
+							return endOfData();
+						}
+						block = blocks.next().decode().iterator();
+					}
+					KeyValue next = block.next();
+					if (start == null || next.getKey().compareTo(start) >= 0) {
+						return next;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Reads and validates the header and the block index.
+	 */
+	private List<Block> readIndex(List<TKeyValue> data) {
+		ByteBuffer value = singletonValue(data);
+		ByteBufferInputStream stream = new ByteBufferInputStream(value);
+		CRC32 headerCrc = new CRC32();
+		DataInputStream in = new DataInputStream(new CheckedInputStream(stream, headerCrc));
+		List<Block> blocks = new ArrayList<Block>();
+		try {
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported frame version " + version);
+			}
+			String encoding = in.readUTF();
+			if (!encoding.equals(blockEncoding.getName())) {
+				throw new IllegalArgumentException("Frame encoded with " + encoding + " rather than " + blockEncoding.getName());
+			}
+			int count = Varints.readUnsignedInt(in);
+			int[] lengths = new int[count];
+			for (int i = 0; i < count; ++i) {
+				Key firstKey = new Key();
+				firstKey.readFields(in);
+				int entries = Varints.readUnsignedInt(in);
+				lengths[i] = Varints.readUnsignedInt(in);
+				blocks.add(new Block(firstKey, entries, in.readInt()));
+			}
+			if (new DataInputStream(stream).readInt() != (int) headerCrc.getValue()) {
+				throw new IllegalArgumentException("Checksum mismatch in the frame header or index.");
+			}
+			int position = value.limit() - stream.available();
+			for (int i = 0; i < count; ++i) {
+				if (position + lengths[i] > value.limit()) {
+					throw new IllegalArgumentException("Frame is truncated.");
+				}
+				ByteBuffer payload = value.duplicate();
+				payload.position(position);
+				payload.limit(position + lengths[i]);
+				blocks.get(i).payload = payload.slice();
+				position += lengths[i];
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return blocks;
+	}
+
+	private static int checksum(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		if (payload.hasArray()) {
+			crc.update(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+		} else {
+			byte[] bytes = new byte[payload.remaining()];
+			payload.duplicate().get(bytes);
+			crc.update(bytes);
+		}
+		return (int) crc.getValue();
+	}
+
+	private class Block {
+
+		private final Key firstKey;
+		private final int entries;
+		private final int crc;
+		private ByteBuffer payload;
+
+		Block(Key firstKey, int entries, int crc) {
+			this.firstKey = firstKey;
+			this.entries = entries;
+			this.crc = crc;
+		}
+
+		List<KeyValue> decode() {
+			if (checksum(payload) != crc) {
+				throw new IllegalArgumentException("Checksum mismatch in block starting at " + firstKey);
+			}
+			List<KeyValue> decoded = blockEncoding.decompress(
+					Collections.singletonList(new TKeyValue(new TKey(), payload.duplicate())));
+			if (decoded.size() != entries) {
+				throw new IllegalArgumentException("Block starting at " + firstKey + " holds " + decoded.size()
+						+ " entries rather than " + entries);
+			}
+			if (!decoded.isEmpty() && !decoded.get(0).getKey().equals(firstKey)) {
+				throw new IllegalArgumentException("Block indexed at " + firstKey + " starts at " + decoded.get(0).getKey());
+			}
+			return decoded;
+		}
+	}
+
+}
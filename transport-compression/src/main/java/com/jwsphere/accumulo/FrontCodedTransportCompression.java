@@ -0,0 +1,320 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * <p>
+ * Front codes each key field against the same field of the previous key,
+ * writing the length of the shared prefix and the remaining suffix as
+ * varints.  Unlike {@link RelativeKeyTransportCompression}, which only elides
+ * fields equal to the previous key, this pays off for hierarchical rows and
+ * qualifiers that share long prefixes without being equal.  Timestamps are
+ * written as zigzag varint deltas.  The result is optionally passed through a
+ * {@link Codec} and stored as the value of a singleton TKeyValue collection.
+ * </p>
+ *
+ * <p>
+ * With a restart interval of N, every Nth entry is written in full, splitting
+ * the batch into segments that decode independently.  The lengths of the
+ * segments precede them so that {@link #decompress(List, ExecutorService)}
+ * can decode the segments in parallel.  An interval of zero never restarts,
+ * and the entries are written directly after a segment count of zero.
+ * </p>
+ */
+public class FrontCodedTransportCompression extends TransportCompression {
+
+	private final Codec codec;
+	private final int restartInterval;
+
+	public FrontCodedTransportCompression() {
+		this(IdentityCodec.INSTANCE);
+	}
+
+	public FrontCodedTransportCompression(Codec codec) {
+		this(codec, 0);
+	}
+
+	public FrontCodedTransportCompression(Codec codec, int restartInterval) {
+		if (restartInterval < 0) {
+			throw new IllegalArgumentException("Restart interval must not be negative.");
+		}
+		this.codec = codec;
+		this.restartInterval = restartInterval;
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + codec.getName() + (restartInterval > 0 ? ",restart=" + restartInterval : "") + "]";
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source) {
+		return compress(source, new ByteBufferOutputStream());
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+		try {
+			if (restartInterval == 0) {
+				DataOutputStream out = new DataOutputStream(codec.compress(buffer));
+				Varints.writeUnsignedInt(out, source.size());
+				Varints.writeUnsignedInt(out, 0);
+				Varints.writeUnsignedInt(out, 0);
+				Encoder encoder = new Encoder();
+				for (KeyValue kv : source) {
+					encoder.write(out, kv);
+				}
+				out.close();
+				return singleton(buffer);
+			}
+
+			ByteArrayOutputStream segments = new ByteArrayOutputStream();
+			DataOutputStream segmentsOut = new DataOutputStream(segments);
+			List<Integer> lengths = new ArrayList<Integer>();
+			Encoder encoder = new Encoder();
+			for (int i = 0; i < source.size(); ++i) {
+				if (isRestart(i) && i > 0) {
+					lengths.add(segments.size());
+					encoder = new Encoder();
+				}
+				encoder.write(segmentsOut, source.get(i));
+			}
+			lengths.add(segments.size());
+
+			DataOutputStream out = new DataOutputStream(codec.compress(buffer));
+			Varints.writeUnsignedInt(out, source.size());
+			Varints.writeUnsignedInt(out, restartInterval);
+			Varints.writeUnsignedInt(out, lengths.size());
+			int start = 0;
+			for (int end : lengths) {
+				Varints.writeUnsignedInt(out, end - start);
+				start = end;
+			}
+			segments.writeTo(out);
+			out.close();
+			return singleton(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private boolean isRestart(int index) {
+		return restartInterval > 0 && index % restartInterval == 0;
+	}
+
+	@Override
+	public List<KeyValue> decompress(List<TKeyValue> data) {
+		return Lists.newArrayList(decompressIterator(data));
+	}
+
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		try {
+			final DataInputStream in = new DataInputStream(codec.decompress(singletonInput(data)));
+			final int size = Varints.readUnsignedInt(in);
+			final int interval = Varints.readUnsignedInt(in);
+			int segments = Varints.readUnsignedInt(in);
+			for (int i = 0; i < segments; ++i) {
+				Varints.readUnsignedInt(in);
+			}
+			return new AbstractIterator<KeyValue>() {
+
+				private Decoder decoder = new Decoder();
+				private int index = 0;
+
+				@Override
+				protected KeyValue computeNext() {
+					try {
+						if (index == size) {
+							in.close();
+							return endOfData();
+						}
+						if (interval > 0 && index % interval == 0) {
+							decoder = new Decoder();
+						}
+						++index;
+						return decoder.read(in);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Decompresses the payload and decodes its segments on the executor,
+	 * returning the entries in order.  The codec is applied on the calling
+	 * thread, so segments decode in parallel only after it finishes.
+	 */
+	public List<KeyValue> decompress(List<TKeyValue> data, ExecutorService executor) {
+		List<Future<List<KeyValue>>> futures = new ArrayList<Future<List<KeyValue>>>();
+		try {
+			DataInputStream in = new DataInputStream(codec.decompress(singletonInput(data)));
+			try {
+				int size = Varints.readUnsignedInt(in);
+				int interval = Varints.readUnsignedInt(in);
+				int[] lengths = new int[Varints.readUnsignedInt(in)];
+				if (lengths.length == 0) {
+					// written without restarts, so there is nothing to decode in parallel
+					return decodeSegment(in, size);
+				}
+				for (int i = 0; i < lengths.length; ++i) {
+					lengths[i] = Varints.readUnsignedInt(in);
+				}
+				for (int i = 0; i < lengths.length; ++i) {
+					final byte[] segment = new byte[lengths[i]];
+					in.readFully(segment);
+					final int count = interval == 0 ? size : Math.min(interval, size - i * interval);
+					futures.add(executor.submit(new Callable<List<KeyValue>>() {
+						public List<KeyValue> call() throws IOException {
+							return decodeSegment(new ByteArrayInputStream(segment), count);
+						}
+					}));
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		List<KeyValue> results = new ArrayList<KeyValue>();
+		try {
+			for (Future<List<KeyValue>> future : futures) {
+				results.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	private static List<KeyValue> decodeSegment(InputStream stream, int count) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		Decoder decoder = new Decoder();
+		List<KeyValue> entries = new ArrayList<KeyValue>(count);
+		for (int i = 0; i < count; ++i) {
+			entries.add(decoder.read(in));
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes entries front coded against the previous entry of the segment.
+	 */
+	private static class Encoder {
+
+		private final ByteSequence[] prev = new ByteSequence[4];
+		private long prevTimestamp = 0;
+
+		void write(DataOutputStream out, KeyValue kv) throws IOException {
+			Key key = kv.getKey();
+			writeField(out, key.getRowData(), 0);
+			writeField(out, key.getColumnFamilyData(), 1);
+			writeField(out, key.getColumnQualifierData(), 2);
+			writeField(out, key.getColumnVisibilityData(), 3);
+			Varints.writeSignedLong(out, key.getTimestamp() - prevTimestamp);
+			prevTimestamp = key.getTimestamp();
+			out.writeBoolean(key.isDeleted());
+			Value value = kv.getValue();
+			Varints.writeUnsignedInt(out, value.getSize());
+			out.write(value.get(), 0, value.getSize());
+		}
+
+		private void writeField(DataOutputStream out, ByteSequence field, int index) throws IOException {
+			ByteSequence previous = prev[index];
+			int shared = 0;
+			if (previous != null) {
+				int max = Math.min(previous.length(), field.length());
+				while (shared < max && previous.byteAt(shared) == field.byteAt(shared)) {
+					++shared;
+				}
+			}
+			Varints.writeUnsignedInt(out, shared);
+			Varints.writeUnsignedInt(out, field.length() - shared);
+			out.write(field.getBackingArray(), field.offset() + shared, field.length() - shared);
+			prev[index] = field;
+		}
+	}
+
+	/**
+	 * Reads entries front coded against the previous entry of the segment.
+	 */
+	private static class Decoder {
+
+		private final byte[][] prev = { new byte[0], new byte[0], new byte[0], new byte[0] };
+		private long prevTimestamp = 0;
+
+		KeyValue read(DataInputStream in) throws IOException {
+			byte[] row = readField(in, 0);
+			byte[] family = readField(in, 1);
+			byte[] qualifier = readField(in, 2);
+			byte[] visibility = readField(in, 3);
+			prevTimestamp += Varints.readSignedLong(in);
+			boolean deleted = in.readBoolean();
+			byte[] value = new byte[Varints.readUnsignedInt(in)];
+			in.readFully(value);
+			Key key = new Key(row, family, qualifier, visibility, prevTimestamp, deleted, false);
+			return new KeyValue(key, new Value(value, false));
+		}
+
+		private byte[] readField(DataInputStream in, int index) throws IOException {
+			int shared = Varints.readUnsignedInt(in);
+			byte[] field = new byte[shared + Varints.readUnsignedInt(in)];
+			System.arraycopy(prev[index], 0, field, 0, shared);
+			in.readFully(field, shared, field.length - shared);
+			prev[index] = field;
+			return field;
+		}
+	}
+
+}
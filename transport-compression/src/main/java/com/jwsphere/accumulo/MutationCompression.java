@@ -0,0 +1,100 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * The write-side counterpart of {@link TransportCompression}, compressing the
+ * batches of mutations a {@code BatchWriter} sends to a tablet server.  The
+ * baseline is the compact thrift encoding of the {@code TMutation} list.
+ */
+public abstract class MutationCompression {
+
+	public abstract byte[] compress(List<Mutation> mutations);
+	public abstract List<Mutation> decompress(byte[] data);
+
+	/**
+	 * A human-readable name of the compression algorithm.
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Compresses and decompresses the batch, reporting the encoded size, the
+	 * time spent in each direction, the bytes allocated and whether the
+	 * decompressed batch matches the original.
+	 */
+	public CompressionStatistics evaluate(List<Mutation> mutations) {
+		long uncompressedSize = computeSize(mutations);
+		long allocated = Allocations.current();
+		long start = System.nanoTime();
+		byte[] compressed = compress(mutations);
+		long encoded = System.nanoTime();
+		List<Mutation> decompressed = null;
+		boolean verified = true;
+		try {
+			decompressed = decompress(compressed);
+		} catch (RuntimeException e) {
+			verified = false;
+		}
+		long decoded = System.nanoTime();
+		allocated = Allocations.since(allocated);
+		verified &= mutations.equals(decompressed);
+
+		return new CompressionStatistics(getName(), uncompressedSize, compressed.length, mutations.size())
+				.withTiming(encoded - start, decoded - encoded, allocated, verified);
+	}
+
+	/**
+	 * Writes the mutations to the stream as a compact thrift list of
+	 * {@code TMutation} and closes it.
+	 */
+	static void writeThrift(List<Mutation> mutations, OutputStream stream) {
+		TTransport transport = new TIOStreamTransport(stream);
+		TCompactProtocol proto = new TCompactProtocol(transport);
+		try {
+			transport.open();
+			proto.writeListBegin(new TList(TType.STRUCT, mutations.size()));
+			for (Mutation mutation : mutations) {
+				mutation.toThrift().write(proto);
+			}
+			proto.writeListEnd();
+		} catch (TException e) {
+			throw new RuntimeException(e);
+		} finally {
+			transport.close();
+		}
+	}
+
+	static long computeSize(List<Mutation> mutations) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeThrift(mutations, baos);
+		return baos.size();
+	}
+
+}
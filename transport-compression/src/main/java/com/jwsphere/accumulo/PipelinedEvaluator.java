@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.data.KeyValue;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * <p>
+ * Evaluates a stream of batches with several compression algorithms on an
+ * executor.  The algorithms evaluating a batch run in parallel, and up to a
+ * bounded number of batches are in flight at once so that reading the next
+ * batch from a scan overlaps with evaluating the previous ones.  Results are
+ * returned in batch order.
+ * </p>
+ *
+ * <p>
+ * Every session must see the batches in order, so the evaluation of a batch by
+ * a session waits for its evaluation of the previous batch.  This cannot
+ * deadlock on a bounded pool since tasks are started in submission order.
+ * </p>
+ */
+public class PipelinedEvaluator {
+
+	private final List<TransportCompression> compressions;
+	private final List<CompressionSession> sessions;
+	private final ExecutorService executor;
+	private final int maxInFlight;
+
+	/**
+	 * @param executor a pool that starts tasks in the order they are submitted
+	 * @param maxInFlight the number of batches evaluated concurrently
+	 */
+	public PipelinedEvaluator(List<TransportCompression> compressions, List<CompressionSession> sessions,
+			ExecutorService executor, int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one batch must be in flight.");
+		}
+		this.compressions = compressions;
+		this.sessions = sessions;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Lazily evaluates the batches, returning the statistics of each batch in
+	 * the order of the compressions followed by the sessions.
+	 */
+	public Iterator<List<CompressionStatistics>> evaluate(final Iterator<List<KeyValue>> batches) {
+		return new AbstractIterator<List<CompressionStatistics>>() {
+
+			private final Deque<List<Future<CompressionStatistics>>> inFlight = new ArrayDeque<List<Future<CompressionStatistics>>>();
+			private final List<Future<CompressionStatistics>> previous = new ArrayList<Future<CompressionStatistics>>();
+
+			@Override
+			protected List<CompressionStatistics> computeNext() {
+				while (inFlight.size() < maxInFlight && batches.hasNext()) {
+					inFlight.addLast(submit(batches.next(), previous));
+				}
+				if (inFlight.isEmpty()) {
+					return endOfData();
+				}
+				return await(inFlight.removeFirst());
+			}
+		};
+	}
+
+	private List<Future<CompressionStatistics>> submit(final List<KeyValue> batch,
+			List<Future<CompressionStatistics>> previous) {
+		List<Future<CompressionStatistics>> futures = new ArrayList<Future<CompressionStatistics>>();
+		for (final TransportCompression compression : compressions) {
+			futures.add(executor.submit(new Callable<CompressionStatistics>() {
+				public CompressionStatistics call() {
+					return compression.evaluate(batch);
+				}
+			}));
+		}
+		for (int i = 0; i < sessions.size(); ++i) {
+			final CompressionSession session = sessions.get(i);
+			final Future<CompressionStatistics> prior = i < previous.size() ? previous.get(i) : null;
+			Future<CompressionStatistics> future = executor.submit(new Callable<CompressionStatistics>() {
+				public CompressionStatistics call() throws Exception {
+					if (prior != null) {
+						prior.get();
+					}
+					return session.evaluate(batch);
+				}
+			});
+			futures.add(future);
+			if (i < previous.size()) {
+				previous.set(i, future);
+			} else {
+				previous.add(future);
+			}
+		}
+		return futures;
+	}
+
+	private static List<CompressionStatistics> await(List<Future<CompressionStatistics>> futures) {
+		List<CompressionStatistics> stats = new ArrayList<CompressionStatistics>(futures.size());
+		try {
+			for (Future<CompressionStatistics> future : futures) {
+				stats.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return stats;
+	}
+
+}
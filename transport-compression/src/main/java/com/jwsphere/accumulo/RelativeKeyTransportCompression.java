@@ -15,49 +15,62 @@
  */
 package com.jwsphere.accumulo;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyValue;
 import org.apache.accumulo.core.data.Value;
-import org.apache.accumulo.core.data.thrift.TKey;
 import org.apache.accumulo.core.data.thrift.TKeyValue;
 import org.apache.accumulo.core.file.rfile.RelativeKey;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
 /**
  * Compresses the data by computing relative keys for sequential keys in order to 
  * perform run-length encoding per byte.  All RLE compressed pairs are written to 
- * a single buffer which is stored as the value in a singleton TKeyValue collection. 
+ * a single buffer, optionally passed through a {@link Codec}, which is stored as
+ * the value in a singleton TKeyValue collection. 
  */
 public class RelativeKeyTransportCompression extends TransportCompression {
 
+	private final Codec codec;
+
+	public RelativeKeyTransportCompression() {
+		this(IdentityCodec.INSTANCE);
+	}
+
+	public RelativeKeyTransportCompression(Codec codec) {
+		this.codec = codec;
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + codec.getName() + "]";
+	}
+
 	public List<TKeyValue> compress(List<? extends KeyValue> source) {
-		Key prev = new Key();
+		return compress(source, new ByteBufferOutputStream());
+	}
+
+	@Override
+	public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
 		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			DataOutputStream out = new DataOutputStream(baos);
-			out.writeInt(source.size());
-			for (KeyValue kv : source) {
-				RelativeKey rk = new RelativeKey(prev, kv.getKey());
-				try {
-					rk.write(out);
-					out.writeInt(kv.getValue().getSize());
-					out.write(kv.getValue().get(), 0, kv.getValue().getSize());
-				} catch (IOException e) { 
-					throw new RuntimeException(e);
-				}
-				prev = kv.getKey();
-			}
-			out.flush();
-			return Collections.singletonList(new TKeyValue(new TKey(), ByteBuffer.wrap(baos.toByteArray())));
+			encode(source, codec.compress(buffer), new Key());
+			return singleton(buffer);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -65,30 +78,107 @@ public class RelativeKeyTransportCompression extends TransportCompression {
 
 	@Override
 	public List<KeyValue> decompress(List<TKeyValue> data) {
-		if (data.size() != 1) {
-			throw new IllegalArgumentException("Unexpected number of results.");
-		}
-		byte[] bytes = data.get(0).getValue();
-		ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-		DataInputStream in = new DataInputStream(bais);
+		return Lists.newArrayList(decompressIterator(data));
+	}
+
+	@Override
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
 		try {
-			int size = in.readInt();
-			List<KeyValue> decoded = new ArrayList<KeyValue>();
-			Key prev = new Key();
-			for (int i = 0; i < size; ++i) {
+			return new DecodingIterator(codec.decompress(singletonInput(data)), new Key());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Carries the last key of each batch into the next so that the first key
+	 * of a batch is also written relative to its predecessor, and keeps the
+	 * codec history across batches when the codec supports it.
+	 */
+	@Override
+	public CompressionSession newSession() {
+		return new CodecCompressionSession(getName(), codec) {
+
+			private Key lastCompressed = new Key();
+			private DecodingIterator lastDecompressed;
+
+			@Override
+			public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+				try {
+					lastCompressed = encode(source, openOutput(buffer), lastCompressed);
+					return singleton(buffer);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+				Key prev = new Key();
+				if (lastDecompressed != null) {
+					if (lastDecompressed.hasNext()) {
+						throw new IllegalStateException("The previous batch was not fully decompressed.");
+					}
+					prev = lastDecompressed.prev;
+				}
+				try {
+					lastDecompressed = new DecodingIterator(openInput(data), prev);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				return lastDecompressed;
+			}
+		};
+	}
+
+	/**
+	 * Writes the batch to the stream and closes it, returning the last key.
+	 */
+	private static Key encode(List<? extends KeyValue> source, OutputStream stream, Key prev) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(source.size());
+		for (KeyValue kv : source) {
+			RelativeKey rk = new RelativeKey(prev, kv.getKey());
+			rk.write(out);
+			out.writeInt(kv.getValue().getSize());
+			out.write(kv.getValue().get(), 0, kv.getValue().getSize());
+			prev = kv.getKey();
+		}
+		out.close();
+		return prev;
+	}
+
+	private static class DecodingIterator extends AbstractIterator<KeyValue> {
+
+		private final DataInputStream in;
+		private Key prev;
+		private int remaining;
+
+		DecodingIterator(InputStream stream, Key prev) throws IOException {
+			this.in = new DataInputStream(stream);
+			this.prev = prev;
+			this.remaining = in.readInt();
+		}
+
+		@Override
+		protected KeyValue computeNext() {
+			try {
+				if (remaining == 0) {
+					in.close();
+					return endOfData();
+				}
+				--remaining;
 				RelativeKey rk = new RelativeKey();
 				rk.setPrevKey(prev);
 				rk.readFields(in);
 				int valueSize = in.readInt();
 				byte[] valueBytes = new byte[valueSize];
-				in.read(valueBytes);
-				Value value = new Value(valueBytes);
-				decoded.add(new KeyValue(rk.getKey(), value));
+				in.readFully(valueBytes);
 				prev = rk.getKey();
+				return new KeyValue(rk.getKey(), new Value(valueBytes, false));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
 			}
-			return decoded;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * <p>
+ * Compresses a batch of mutations with the techniques the scan encodings use
+ * for keys, passing the result through a {@link Codec}.
+ * </p>
+ *
+ * <p>
+ * Each row is written as the length of the prefix it shares with the previous
+ * row followed by the remaining bytes.  Column families, qualifiers and
+ * visibilities are written the first time they occur in the batch and are
+ * referenced by dictionary id afterwards.  Timestamps are written as deltas
+ * from the previous timestamp, and updates without a timestamp, which the
+ * tablet server assigns, stay without one.
+ * </p>
+ */
+public class RelativeMutationCompression extends MutationCompression {
+
+	private static final int MAX_DICTIONARY_ENTRIES = 1024;
+
+	private static final int HAS_TIMESTAMP = 1;
+	private static final int DELETED = 2;
+
+	private final Codec codec;
+
+	public RelativeMutationCompression() {
+		this(IdentityCodec.INSTANCE);
+	}
+
+	public RelativeMutationCompression(Codec codec) {
+		this.codec = codec;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + codec.getName() + "]";
+	}
+
+	@Override
+	public byte[] compress(List<Mutation> mutations) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(codec.compress(baos));
+			try {
+				encode(mutations, out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	@Override
+	public List<Mutation> decompress(byte[] data) {
+		try {
+			DataInputStream in = new DataInputStream(codec.decompress(new ByteArrayInputStream(data)));
+			try {
+				return decode(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void encode(List<Mutation> mutations, DataOutputStream out) throws IOException {
+		Map<ByteSequence, Integer> families = new HashMap<ByteSequence, Integer>();
+		Map<ByteSequence, Integer> qualifiers = new HashMap<ByteSequence, Integer>();
+		Map<ByteSequence, Integer> visibilities = new HashMap<ByteSequence, Integer>();
+		byte[] prevRow = new byte[0];
+		long prevTimestamp = 0;
+
+		Varints.writeUnsignedInt(out, mutations.size());
+		for (Mutation mutation : mutations) {
+			byte[] row = mutation.getRow();
+			int shared = sharedPrefix(prevRow, row);
+			Varints.writeUnsignedInt(out, shared);
+			Varints.writeUnsignedInt(out, row.length - shared);
+			out.write(row, shared, row.length - shared);
+			prevRow = row;
+
+			List<ColumnUpdate> updates = mutation.getUpdates();
+			Varints.writeUnsignedInt(out, updates.size());
+			for (ColumnUpdate update : updates) {
+				writeColumn(out, update.getColumnFamily(), families);
+				writeColumn(out, update.getColumnQualifier(), qualifiers);
+				writeColumn(out, update.getColumnVisibility(), visibilities);
+				out.writeByte((update.hasTimestamp() ? HAS_TIMESTAMP : 0) | (update.isDeleted() ? DELETED : 0));
+				if (update.hasTimestamp()) {
+					Varints.writeSignedLong(out, update.getTimestamp() - prevTimestamp);
+					prevTimestamp = update.getTimestamp();
+				}
+				if (!update.isDeleted()) {
+					byte[] value = update.getValue();
+					Varints.writeUnsignedInt(out, value.length);
+					out.write(value);
+				}
+			}
+		}
+	}
+
+	private static List<Mutation> decode(DataInputStream in) throws IOException {
+		List<byte[]> families = new ArrayList<byte[]>();
+		List<byte[]> qualifiers = new ArrayList<byte[]>();
+		List<byte[]> visibilities = new ArrayList<byte[]>();
+		byte[] prevRow = new byte[0];
+		long prevTimestamp = 0;
+
+		int count = Varints.readUnsignedInt(in);
+		List<Mutation> mutations = new ArrayList<Mutation>(count);
+		for (int i = 0; i < count; ++i) {
+			int shared = Varints.readUnsignedInt(in);
+			byte[] row = new byte[shared + Varints.readUnsignedInt(in)];
+			System.arraycopy(prevRow, 0, row, 0, shared);
+			in.readFully(row, shared, row.length - shared);
+			prevRow = row;
+
+			Mutation mutation = new Mutation(row);
+			int updates = Varints.readUnsignedInt(in);
+			for (int j = 0; j < updates; ++j) {
+				byte[] family = readColumn(in, families);
+				byte[] qualifier = readColumn(in, qualifiers);
+				ColumnVisibility visibility = new ColumnVisibility(readColumn(in, visibilities));
+				int flags = in.readUnsignedByte();
+				boolean hasTimestamp = (flags & HAS_TIMESTAMP) != 0;
+				if (hasTimestamp) {
+					prevTimestamp += Varints.readSignedLong(in);
+				}
+				if ((flags & DELETED) != 0) {
+					if (hasTimestamp) {
+						mutation.putDelete(family, qualifier, visibility, prevTimestamp);
+					} else {
+						mutation.putDelete(family, qualifier, visibility);
+					}
+				} else {
+					byte[] value = new byte[Varints.readUnsignedInt(in)];
+					in.readFully(value);
+					if (hasTimestamp) {
+						mutation.put(family, qualifier, visibility, prevTimestamp, value);
+					} else {
+						mutation.put(family, qualifier, visibility, value);
+					}
+				}
+			}
+			mutations.add(mutation);
+		}
+		return mutations;
+	}
+
+	private static int sharedPrefix(byte[] prev, byte[] row) {
+		int max = Math.min(prev.length, row.length);
+		int shared = 0;
+		while (shared < max && prev[shared] == row[shared]) {
+			++shared;
+		}
+		return shared;
+	}
+
+	/**
+	 * Writes the id of a column seen earlier in the batch plus one, or zero
+	 * followed by the column itself.
+	 */
+	private static void writeColumn(DataOutputStream out, byte[] column, Map<ByteSequence, Integer> dictionary)
+			throws IOException {
+		ByteSequence key = new ArrayByteSequence(column);
+		Integer id = dictionary.get(key);
+		if (id != null) {
+			Varints.writeUnsignedInt(out, id + 1);
+			return;
+		}
+		Varints.writeUnsignedInt(out, 0);
+		Varints.writeUnsignedInt(out, column.length);
+		out.write(column);
+		if (dictionary.size() < MAX_DICTIONARY_ENTRIES) {
+			dictionary.put(key, dictionary.size());
+		}
+	}
+
+	private static byte[] readColumn(DataInputStream in, List<byte[]> dictionary) throws IOException {
+		int id = Varints.readUnsignedInt(in);
+		if (id > 0) {
+			return dictionary.get(id - 1);
+		}
+		byte[] column = new byte[Varints.readUnsignedInt(in)];
+		in.readFully(column);
+		if (dictionary.size() < MAX_DICTIONARY_ENTRIES) {
+			dictionary.add(column);
+		}
+		return column;
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * Streams the batches of a corpus file written by a {@link ScanCorpusWriter},
+ * holding only the current batch in memory.
+ */
+public class ScanCorpusReader extends AbstractIterator<List<KeyValue>> implements Closeable {
+
+	private final DataInputStream in;
+
+	public ScanCorpusReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	public ScanCorpusReader(InputStream stream) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+		if (in.readInt() != ScanCorpusWriter.MAGIC) {
+			in.close();
+			throw new IllegalArgumentException("Not a scan corpus file.");
+		}
+		int version = in.readUnsignedByte();
+		if (version != ScanCorpusWriter.VERSION) {
+			in.close();
+			throw new IllegalArgumentException("Unsupported scan corpus version " + version);
+		}
+	}
+
+	@Override
+	protected List<KeyValue> computeNext() {
+		try {
+			int size = Varints.readUnsignedInt(in);
+			if (size == 0) {
+				return endOfData();
+			}
+			List<KeyValue> batch = new ArrayList<KeyValue>(size);
+			for (int i = 0; i < size; ++i) {
+				Key key = new Key();
+				key.readFields(in);
+				byte[] value = new byte[Varints.readUnsignedInt(in)];
+				in.readFully(value);
+				batch.add(new KeyValue(key, value));
+			}
+			return batch;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
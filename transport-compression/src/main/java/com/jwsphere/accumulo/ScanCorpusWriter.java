@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * <p>
+ * Writes batches of a scan to a gzipped corpus file so that they can be
+ * replayed without a cluster, see {@link ScanCorpusReader}.  The file holds a
+ * magic number and version followed by the batches, each written as its
+ * varint entry count and its entries, and ends with a zero count : <br>
+ *
+ *   key - the {@code Writable} form of the key <br>
+ *   value - varint length followed by the value bytes <br>
+ *
+ * </p>
+ */
+public class ScanCorpusWriter implements Closeable {
+
+	static final int MAGIC = 0x54435343;
+	static final int VERSION = 1;
+
+	private final DataOutputStream out;
+	private long batches;
+	private long entries;
+
+	public ScanCorpusWriter(File file) throws IOException {
+		this(new FileOutputStream(file));
+	}
+
+	public ScanCorpusWriter(OutputStream stream) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(stream)));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	public void write(List<? extends KeyValue> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		Varints.writeUnsignedInt(out, batch.size());
+		for (KeyValue kv : batch) {
+			kv.getKey().write(out);
+			Value value = kv.getValue();
+			Varints.writeUnsignedInt(out, value.getSize());
+			out.write(value.get(), 0, value.getSize());
+		}
+		++batches;
+		entries += batch.size();
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Writes the end marker and closes the file.
+	 */
+	public void close() throws IOException {
+		Varints.writeUnsignedInt(out, 0);
+		out.close();
+	}
+
+}
@@ -1,36 +1,194 @@
 package com.jwsphere.accumulo;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Random;
 
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
+import com.google.common.collect.AbstractIterator;
 
 public class Scans {
-	
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** The default cap on the updates of a mutation built from a scan. */
+	public static final int DEFAULT_MUTATION_UPDATES = 10000;
+
+	/** The default cap on the estimated bytes of a mutation built from a scan. */
+	public static final long DEFAULT_MUTATION_BYTES = 1 << 20;
+
 	private Scans() {
 	}
 
 	public static Iterator<List<KeyValue>> toBatchIterator(Iterator<Entry<Key, Value>> source, int batchSize) {
-		return Iterators.partition(Iterators.transform(source, new Function<Entry<Key, Value>, KeyValue>() {
-			public KeyValue apply(Entry<Key, Value> entry) {
-				return new KeyValue(entry.getKey(), entry.getValue());
-			}
-		}), batchSize);
+		return toBatchIterator(source, BatchBudget.entries(batchSize));
 	}
-	
+
 	public static Iterable<List<KeyValue>> toBatchIterable(Iterable<Entry<Key, Value>> source, int batchSize) {
-		return Iterables.partition(Iterables.transform(source, new Function<Entry<Key, Value>, KeyValue>() {
-			public KeyValue apply(Entry<Key, Value> entry) {
-				return new KeyValue(entry.getKey(), entry.getValue());
+		return toBatchIterable(source, BatchBudget.entries(batchSize));
+	}
+
+	public static Iterable<List<KeyValue>> toBatchIterable(final Iterable<Entry<Key, Value>> source,
+			final BatchBudget budget) {
+		return new Iterable<List<KeyValue>>() {
+			public Iterator<List<KeyValue>> iterator() {
+				return toBatchIterator(source.iterator(), budget);
+			}
+		};
+	}
+
+	/**
+	 * Splits the source into batches that fit the budget.  Entries that are
+	 * already {@code KeyValue} objects, as those of a scanner are, are added
+	 * to the batches as is rather than wrapped.
+	 */
+	public static Iterator<List<KeyValue>> toBatchIterator(final Iterator<Entry<Key, Value>> source,
+			final BatchBudget budget) {
+		return new AbstractIterator<List<KeyValue>>() {
+
+			private KeyValue pending;
+
+			@Override
+			protected List<KeyValue> computeNext() {
+				if (pending == null) {
+					if (!source.hasNext()) {
+						return endOfData();
+					}
+					pending = toKeyValue(source.next());
+				}
+				long maxBytes = budget.getMaxBytes();
+				List<KeyValue> batch = new ArrayList<KeyValue>(Math.min(budget.getMaxEntries(), DEFAULT_CAPACITY));
+				long bytes = 0;
+				while (pending != null) {
+					long size = BatchBudget.sizeOf(pending);
+					if (!budget.fits(batch.size(), bytes, size, maxBytes)) {
+						break;
+					}
+					batch.add(pending);
+					bytes += size;
+					pending = source.hasNext() ? toKeyValue(source.next()) : null;
+				}
+				return batch;
+			}
+		};
+	}
+
+	private static KeyValue toKeyValue(Entry<Key, Value> entry) {
+		if (entry instanceof KeyValue) {
+			return (KeyValue) entry;
+		}
+		return new KeyValue(entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * Groups consecutive entries with the same row into mutations of at most
+	 * {@link #DEFAULT_MUTATION_UPDATES} updates and
+	 * {@link #DEFAULT_MUTATION_BYTES} estimated bytes.
+	 */
+	public static Iterator<Mutation> toMutationIterator(Iterator<Entry<Key, Value>> source) {
+		return toMutationIterator(source, BatchBudget.entries(DEFAULT_MUTATION_UPDATES).withMaxBytes(DEFAULT_MUTATION_BYTES));
+	}
+
+	/**
+	 * Groups consecutive entries with the same row into the mutation that
+	 * would write them, keeping their timestamps and delete markers.  Once a
+	 * mutation reaches the budget, the rest of the row continues in a new
+	 * mutation, as an ingest client writing a wide row would split it.
+	 */
+	public static Iterator<Mutation> toMutationIterator(final Iterator<Entry<Key, Value>> source,
+			final BatchBudget budget) {
+		return new AbstractIterator<Mutation>() {
+
+			private Entry<Key, Value> pending;
+
+			@Override
+			protected Mutation computeNext() {
+				if (pending == null) {
+					if (!source.hasNext()) {
+						return endOfData();
+					}
+					pending = source.next();
+				}
+				ByteSequence row = pending.getKey().getRowData();
+				Mutation mutation = new Mutation(row.toArray());
+				long maxBytes = budget.getMaxBytes();
+				int updates = 0;
+				long bytes = 0;
+				while (pending != null && pending.getKey().getRowData().equals(row)) {
+					long size = BatchBudget.sizeOf(pending);
+					if (!budget.fits(updates, bytes, size, maxBytes)) {
+						break;
+					}
+					++updates;
+					bytes += size;
+					Key key = pending.getKey();
+					ColumnVisibility visibility = new ColumnVisibility(key.getColumnVisibilityData().toArray());
+					if (key.isDeleted()) {
+						mutation.putDelete(key.getColumnFamilyData().toArray(), key.getColumnQualifierData().toArray(),
+								visibility, key.getTimestamp());
+					} else {
+						mutation.put(key.getColumnFamilyData().toArray(), key.getColumnQualifierData().toArray(),
+								visibility, key.getTimestamp(), pending.getValue().get());
+					}
+					pending = source.hasNext() ? source.next() : null;
+				}
+				return mutation;
+			}
+		};
+	}
+
+	/**
+	 * Returns every {@code n}th element of the source, starting with the first.
+	 */
+	public static <T> Iterator<T> sampleEvery(final Iterator<T> source, final int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Sampling interval must be positive.");
+		}
+		return new AbstractIterator<T>() {
+
+			private long index = 0;
+
+			@Override
+			protected T computeNext() {
+				while (source.hasNext()) {
+					T next = source.next();
+					if (index++ % n == 0) {
+						return next;
+					}
+				}
+				return endOfData();
+			}
+		};
+	}
+
+	/**
+	 * Returns each element of the source with the given probability.
+	 */
+	public static <T> Iterator<T> sampleFraction(final Iterator<T> source, final double fraction, final Random random) {
+		if (fraction <= 0 || fraction > 1) {
+			throw new IllegalArgumentException("Sampling fraction must be in (0, 1].");
+		}
+		return new AbstractIterator<T>() {
+
+			@Override
+			protected T computeNext() {
+				while (source.hasNext()) {
+					T next = source.next();
+					if (random.nextDouble() < fraction) {
+						return next;
+					}
+				}
+				return endOfData();
 			}
-		}), batchSize);
+		};
 	}
 
 }
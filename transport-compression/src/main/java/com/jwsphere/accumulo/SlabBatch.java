@@ -0,0 +1,228 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+
+/**
+ * A decoded batch whose field bytes all live in a single shared slab, except
+ * for values which may live in an array of their own.  Entries are described
+ * by offsets into the slab, so reading a row or value through the
+ * {@code get*Data} accessors returns a view without allocating a copy.  Full
+ * {@link Key} and {@link Value} objects are only materialized when requested.
+ * The slab must not be modified while the batch is in use.
+ */
+public class SlabBatch implements Iterable<SlabBatch.Entry> {
+
+	static final int ROW = 0;
+	static final int FAMILY = 1;
+	static final int QUALIFIER = 2;
+	static final int VISIBILITY = 3;
+	static final int VALUE = 4;
+	static final int NUM_FIELDS = 5;
+
+	private final byte[] slab;
+	private final byte[] values;
+	private final int size;
+	private final int[][] offsets;
+	private final int[][] lengths;
+	private final long[] timestamps;
+	private final boolean[] deleted;
+
+	SlabBatch(byte[] slab, int size, int[][] offsets, int[][] lengths, long[] timestamps, boolean[] deleted) {
+		this(slab, slab, size, offsets, lengths, timestamps, deleted);
+	}
+
+	/**
+	 * Creates a batch whose value offsets refer to the given values array
+	 * rather than to the slab.
+	 */
+	SlabBatch(byte[] slab, byte[] values, int size, int[][] offsets, int[][] lengths, long[] timestamps,
+			boolean[] deleted) {
+		this.slab = slab;
+		this.values = values;
+		this.size = size;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.timestamps = timestamps;
+		this.deleted = deleted;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public ByteSequence getRowData(int i) {
+		return view(ROW, i);
+	}
+
+	/**
+	 * Copies the row into the supplied text, allowing it to be reused across entries.
+	 */
+	public Text getRow(int i, Text row) {
+		row.set(slab, offsets[ROW][i], lengths[ROW][i]);
+		return row;
+	}
+
+	public ByteSequence getColumnFamilyData(int i) {
+		return view(FAMILY, i);
+	}
+
+	public ByteSequence getColumnQualifierData(int i) {
+		return view(QUALIFIER, i);
+	}
+
+	public ByteSequence getColumnVisibilityData(int i) {
+		return view(VISIBILITY, i);
+	}
+
+	public long getTimestamp(int i) {
+		return timestamps[i];
+	}
+
+	public boolean isDeleted(int i) {
+		return deleted[i];
+	}
+
+	public ByteSequence getValueData(int i) {
+		return view(VALUE, i);
+	}
+
+	/**
+	 * Materializes the key.  Its fields are copied out of the slab once and
+	 * handed to the key without the second copy it would otherwise make.
+	 */
+	public Key getKey(int i) {
+		return new Key(copy(ROW, i), copy(FAMILY, i), copy(QUALIFIER, i), copy(VISIBILITY, i), timestamps[i], deleted[i],
+				false);
+	}
+
+	public Value getValue(int i) {
+		return new Value(copy(VALUE, i), false);
+	}
+
+	public KeyValue getKeyValue(int i) {
+		return new KeyValue(getKey(i), getValue(i));
+	}
+
+	/**
+	 * Iterates over lightweight views of the entries.
+	 */
+	public Iterator<Entry> iterator() {
+		return new Iterator<Entry>() {
+
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			public Entry next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return new Entry(next++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private ByteSequence view(int field, int i) {
+		return new ArrayByteSequence(array(field), offsets[field][i], lengths[field][i]);
+	}
+
+	private byte[] copy(int field, int i) {
+		byte[] bytes = new byte[lengths[field][i]];
+		System.arraycopy(array(field), offsets[field][i], bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	private byte[] array(int field) {
+		return field == VALUE ? values : slab;
+	}
+
+	/**
+	 * A view of a single entry in the batch.
+	 */
+	public class Entry {
+
+		private final int index;
+
+		Entry(int index) {
+			this.index = index;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public ByteSequence getRowData() {
+			return SlabBatch.this.getRowData(index);
+		}
+
+		public Text getRow(Text row) {
+			return SlabBatch.this.getRow(index, row);
+		}
+
+		public ByteSequence getColumnFamilyData() {
+			return SlabBatch.this.getColumnFamilyData(index);
+		}
+
+		public ByteSequence getColumnQualifierData() {
+			return SlabBatch.this.getColumnQualifierData(index);
+		}
+
+		public ByteSequence getColumnVisibilityData() {
+			return SlabBatch.this.getColumnVisibilityData(index);
+		}
+
+		public long getTimestamp() {
+			return SlabBatch.this.getTimestamp(index);
+		}
+
+		public boolean isDeleted() {
+			return SlabBatch.this.isDeleted(index);
+		}
+
+		public ByteSequence getValueData() {
+			return SlabBatch.this.getValueData(index);
+		}
+
+		public Key getKey() {
+			return SlabBatch.this.getKey(index);
+		}
+
+		public Value getValue() {
+			return SlabBatch.this.getValue(index);
+		}
+
+		public KeyValue getKeyValue() {
+			return SlabBatch.this.getKeyValue(index);
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.thrift.TMutation;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+import com.jwsphere.accumulo.codec.Codec;
+
+/**
+ * Compresses a batch of mutations by passing the compact thrift encoding of
+ * the {@code TMutation} list through a {@link Codec}.
+ */
+public class ThriftMutationCompression extends MutationCompression {
+
+	private final Codec codec;
+
+	public ThriftMutationCompression(Codec codec) {
+		this.codec = codec;
+	}
+
+	@Override
+	public String getName() {
+		return super.getName() + "[" + codec.getName() + "]";
+	}
+
+	@Override
+	public byte[] compress(List<Mutation> mutations) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			writeThrift(mutations, codec.compress(baos));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	@Override
+	public List<Mutation> decompress(byte[] data) {
+		TTransport transport;
+		try {
+			transport = new TIOStreamTransport(codec.decompress(new ByteArrayInputStream(data)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		TCompactProtocol proto = new TCompactProtocol(transport);
+		try {
+			transport.open();
+			TList list = proto.readListBegin();
+			List<Mutation> mutations = new ArrayList<Mutation>(list.size);
+			for (int i = 0; i < list.size; ++i) {
+				TMutation tmutation = new TMutation();
+				tmutation.read(proto);
+				mutations.add(new Mutation(tmutation));
+			}
+			proto.readListEnd();
+			return mutations;
+		} catch (TException e) {
+			throw new RuntimeException(e);
+		} finally {
+			transport.close();
+		}
+	}
+
+}
@@ -16,35 +16,121 @@
 package com.jwsphere.accumulo;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyValue;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.data.thrift.ScanResult;
+import org.apache.accumulo.core.data.thrift.TKey;
 import org.apache.accumulo.core.data.thrift.TKeyValue;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.transport.TIOStreamTransport;
 import org.apache.thrift.transport.TTransport;
 
+import com.google.common.collect.Iterators;
+import com.jwsphere.accumulo.io.ByteBufferInputStream;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+import com.jwsphere.accumulo.io.ByteBufferPool;
+
 
 public abstract class TransportCompression {
 
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024 * 1024;
+
+	private final ByteBufferPool buffers = new ByteBufferPool(1, ByteBufferOutputStream.DEFAULT_CAPACITY, MAX_RETAINED_BUFFER, false);
+
 	public abstract List<TKeyValue> compress(List<? extends KeyValue> data);
 	public abstract List<KeyValue> decompress(List<TKeyValue> data);
 
+	/**
+	 * Compresses the batch, writing the encoded payload into the supplied buffer
+	 * rather than a freshly allocated array.  The returned key-value pairs may be
+	 * views of the buffer, so it must not be reset or reused until they have been
+	 * serialized.  The default implementation does not use the buffer.
+	 */
+	public List<TKeyValue> compress(List<? extends KeyValue> data, ByteBufferOutputStream buffer) {
+		return compress(data);
+	}
+
+	/**
+	 * A human-readable name of the compression algorithm.
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Decompresses the batch lazily, decoding each entry as the iterator is
+	 * advanced rather than materializing the whole batch up front.  Resources
+	 * such as pooled inflaters are released once the iterator is exhausted, so
+	 * callers should drain it.  The default implementation delegates to
+	 * {@link #decompress(List)}.
+	 */
+	public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+		return decompress(data).iterator();
+	}
+
+	/**
+	 * Starts a session for compressing the consecutive batches of one scan.
+	 * The default session compresses each batch independently; encodings
+	 * override this to carry state from one batch to the next.
+	 */
+	public CompressionSession newSession() {
+		return new CompressionSession(getName()) {
+
+			@Override
+			public List<TKeyValue> compress(List<? extends KeyValue> data, ByteBufferOutputStream buffer) {
+				return TransportCompression.this.compress(data, buffer);
+			}
+
+			@Override
+			public Iterator<KeyValue> decompressIterator(List<TKeyValue> data) {
+				return TransportCompression.this.decompressIterator(data);
+			}
+		};
+	}
+
+	/**
+	 * Compresses and decompresses the batch, reporting the encoded size, the
+	 * time spent in each direction, the bytes allocated and whether the
+	 * decompressed batch matches the original.
+	 */
 	public CompressionStatistics evaluate(List<? extends KeyValue> data) {
 		List<TKeyValue> uncompressed = toThrift(data);
-		List<TKeyValue> compressed = compress(data);
-		long compressedSize = computeSize(compressed);
 		long uncompressedSize = computeSize(uncompressed);
-		return new CompressionStatistics(this.getClass().getSimpleName(), uncompressedSize, compressedSize, data.size());
+		ByteBufferOutputStream buffer = buffers.acquire();
+		try {
+			long allocated = Allocations.current();
+			long start = System.nanoTime();
+			List<TKeyValue> compressed = compress(data, buffer);
+			long encoded = System.nanoTime();
+			List<KeyValue> decompressed = new ArrayList<KeyValue>(data.size());
+			boolean verified = true;
+			try {
+				Iterators.addAll(decompressed, decompressIterator(compressed));
+			} catch (RuntimeException e) {
+				verified = false;
+			}
+			long decoded = System.nanoTime();
+			allocated = Allocations.since(allocated);
+			verified &= data.equals(decompressed);
+
+			long compressedSize = computeSize(compressed);
+			return new CompressionStatistics(getName(), uncompressedSize, compressedSize, data.size())
+					.withTiming(encoded - start, decoded - encoded, allocated, verified);
+		} finally {
+			buffers.release(buffer);
+		}
 	}
 
-	protected List<TKeyValue> toThrift(List<? extends KeyValue> data) {
+	protected static List<TKeyValue> toThrift(List<? extends KeyValue> data) {
 		List<TKeyValue> results = new ArrayList<TKeyValue>();
 		for (KeyValue kv : data) {
 			results.add(new TKeyValue(kv.getKey().toThrift(), 
@@ -61,7 +147,33 @@ public abstract class TransportCompression {
 		return results;
 	}
 
-	private long computeSize(List<TKeyValue> data) {
+	/**
+	 * Wraps the bytes written to the buffer as the value of a singleton
+	 * TKeyValue collection without copying them.
+	 */
+	protected static List<TKeyValue> singleton(ByteBufferOutputStream buffer) {
+		return Collections.singletonList(new TKeyValue(new TKey(), buffer.toByteBuffer()));
+	}
+
+	/**
+	 * Reads the value of a singleton TKeyValue collection directly from the
+	 * thrift value buffer without copying it.
+	 */
+	protected static InputStream singletonInput(List<TKeyValue> data) {
+		return new ByteBufferInputStream(singletonValue(data));
+	}
+
+	/**
+	 * Returns the value buffer of a singleton TKeyValue collection without copying it.
+	 */
+	protected static ByteBuffer singletonValue(List<TKeyValue> data) {
+		if (data.size() != 1) {
+			throw new IllegalArgumentException("Unexpected number of results.");
+		}
+		return data.get(0).bufferForValue();
+	}
+
+	static long computeSize(List<TKeyValue> data) {
 		ScanResult result = new ScanResult(data, false);
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		TTransport transport = new TIOStreamTransport(baos);
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+import com.jwsphere.accumulo.io.ByteArrayReader;
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * Encodes the values of a batch with whichever of a few typed encodings is
+ * smallest for it, preceded by a mode byte.  Batches where every value is
+ * empty are written as the mode alone.  Eight byte values are read as big
+ * endian longs, as the fixed length encoder of the summing combiners writes
+ * them, and canonical ASCII decimals are parsed, both then written as zig-zag
+ * varint deltas from the previous value.  Runs of equal values are written
+ * once with the length of the run.  Otherwise each value is written raw with
+ * a varint length.
+ */
+final class ValueEncoding {
+
+	static final int RAW = 0;
+	static final int EMPTY = 1;
+	static final int REPEATED = 2;
+	static final int FIXED_LONG = 3;
+	static final int DECIMAL = 4;
+
+	private static final int LONG_SIZE = 8;
+	private static final int MAX_DECIMAL_DIGITS = 18;
+
+	private ValueEncoding() {
+	}
+
+	/**
+	 * The mode that encodes the values in the fewest bytes.
+	 */
+	static int choose(List<? extends KeyValue> source) {
+		if (!source.isEmpty() && allEmpty(source)) {
+			return EMPTY;
+		}
+		int mode = RAW;
+		long best = rawSize(source);
+		long size = repeatedSize(source);
+		if (size < best) {
+			mode = REPEATED;
+			best = size;
+		}
+		size = longSize(source, FIXED_LONG);
+		if (size < best) {
+			mode = FIXED_LONG;
+			best = size;
+		}
+		if (longSize(source, DECIMAL) < best) {
+			mode = DECIMAL;
+		}
+		return mode;
+	}
+
+	/**
+	 * The number of bytes written by {@link #write}, including the mode.
+	 */
+	static long size(List<? extends KeyValue> source) {
+		switch (choose(source)) {
+		case EMPTY:
+			return 1;
+		case REPEATED:
+			return 1 + repeatedSize(source);
+		case FIXED_LONG:
+			return 1 + longSize(source, FIXED_LONG);
+		case DECIMAL:
+			return 1 + longSize(source, DECIMAL);
+		default:
+			return 1 + rawSize(source);
+		}
+	}
+
+	/**
+	 * The number of bytes spent on the values as raw varint length prefixed
+	 * values, without a mode.
+	 */
+	static long rawSize(List<? extends KeyValue> source) {
+		long size = 0;
+		for (KeyValue kv : source) {
+			size += Varints.sizeOfUnsignedLong(kv.getValue().getSize()) + kv.getValue().getSize();
+		}
+		return size;
+	}
+
+	static void write(List<? extends KeyValue> source, DataOutputStream out) throws IOException {
+		int mode = choose(source);
+		out.writeByte(mode);
+		switch (mode) {
+		case EMPTY:
+			break;
+		case REPEATED:
+			int i = 0;
+			while (i < source.size()) {
+				Value value = source.get(i).getValue();
+				int run = runLength(source, i);
+				Varints.writeUnsignedInt(out, run);
+				Varints.writeUnsignedInt(out, value.getSize());
+				out.write(value.get(), 0, value.getSize());
+				i += run;
+			}
+			break;
+		case FIXED_LONG:
+		case DECIMAL:
+			long prev = 0;
+			for (KeyValue kv : source) {
+				long value = mode == FIXED_LONG ? fixedLong(kv.getValue()) : decimal(kv.getValue());
+				Varints.writeSignedLong(out, value - prev);
+				prev = value;
+			}
+			break;
+		default:
+			for (KeyValue kv : source) {
+				Varints.writeUnsignedInt(out, kv.getValue().getSize());
+				out.write(kv.getValue().get(), 0, kv.getValue().getSize());
+			}
+		}
+	}
+
+	/**
+	 * Reads the values of a batch of the given size, filling in their offsets
+	 * and lengths, and returns the array the offsets refer to.  Raw and
+	 * repeated values are referenced where they are in the payload, so only
+	 * numeric values are materialized, into an array of exactly their size.
+	 */
+	static byte[] read(ByteArrayReader in, int size, int[] offsets, int[] lengths) throws IOException {
+		int mode = in.readByte();
+		switch (mode) {
+		case EMPTY:
+			return in.array();
+		case REPEATED:
+			int i = 0;
+			while (i < size) {
+				int run = in.readUnsignedVarint();
+				int length = in.readUnsignedVarint();
+				if (run == 0 || run > size - i) {
+					throw new IOException("Run of " + run + " values exceeds the batch.");
+				}
+				int offset = in.skip(length);
+				for (int end = i + run; i < end; ++i) {
+					offsets[i] = offset;
+					lengths[i] = length;
+				}
+			}
+			return in.array();
+		case FIXED_LONG:
+		case DECIMAL:
+			return readLongs(in, size, mode, offsets, lengths);
+		case RAW:
+			for (int j = 0; j < size; ++j) {
+				lengths[j] = in.readUnsignedVarint();
+				offsets[j] = in.skip(lengths[j]);
+			}
+			return in.array();
+		default:
+			throw new IOException("Unexpected value mode " + mode);
+		}
+	}
+
+	private static byte[] readLongs(ByteArrayReader in, int size, int mode, int[] offsets, int[] lengths)
+			throws IOException {
+		long[] values = new long[size];
+		int total = 0;
+		long value = 0;
+		for (int i = 0; i < size; ++i) {
+			value += Varints.unZigZag(in.readUnsignedVarlong());
+			values[i] = value;
+			lengths[i] = mode == FIXED_LONG ? LONG_SIZE : decimalLength(value);
+			offsets[i] = total;
+			total += lengths[i];
+		}
+		byte[] bytes = new byte[total];
+		for (int i = 0; i < size; ++i) {
+			if (mode == FIXED_LONG) {
+				for (int j = 0; j < LONG_SIZE; ++j) {
+					bytes[offsets[i] + j] = (byte) (values[i] >>> (8 * (LONG_SIZE - 1 - j)));
+				}
+			} else {
+				writeDecimal(values[i], bytes, offsets[i] + lengths[i]);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * The number of characters {@link Long#toString(long)} writes for a value
+	 * of at most {@value #MAX_DECIMAL_DIGITS} digits.
+	 */
+	private static int decimalLength(long value) {
+		int length = value < 0 ? 2 : 1;
+		for (long remaining = Math.abs(value) / 10; remaining != 0; remaining /= 10) {
+			++length;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the decimal digits of the value so that they end before the
+	 * given index.
+	 */
+	private static void writeDecimal(long value, byte[] bytes, int end) {
+		long remaining = Math.abs(value);
+		do {
+			bytes[--end] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		} while (remaining != 0);
+		if (value < 0) {
+			bytes[--end] = '-';
+		}
+	}
+
+	private static boolean allEmpty(List<? extends KeyValue> source) {
+		for (KeyValue kv : source) {
+			if (kv.getValue().getSize() != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int runLength(List<? extends KeyValue> source, int start) {
+		Value value = source.get(start).getValue();
+		int end = start + 1;
+		while (end < source.size() && source.get(end).getValue().equals(value)) {
+			++end;
+		}
+		return end - start;
+	}
+
+	private static long repeatedSize(List<? extends KeyValue> source) {
+		long size = 0;
+		int i = 0;
+		while (i < source.size()) {
+			int run = runLength(source, i);
+			int length = source.get(i).getValue().getSize();
+			size += Varints.sizeOfUnsignedLong(run) + Varints.sizeOfUnsignedLong(length) + length;
+			i += run;
+		}
+		return size;
+	}
+
+	/**
+	 * The size of the values as zig-zag varint deltas, or
+	 * {@code Long.MAX_VALUE} if any value cannot be read as a long in the mode.
+	 */
+	private static long longSize(List<? extends KeyValue> source, int mode) {
+		long size = 0;
+		long prev = 0;
+		for (KeyValue kv : source) {
+			Value value = kv.getValue();
+			long current;
+			if (mode == FIXED_LONG) {
+				if (value.getSize() != LONG_SIZE) {
+					return Long.MAX_VALUE;
+				}
+				current = fixedLong(value);
+			} else {
+				if (!isDecimal(value)) {
+					return Long.MAX_VALUE;
+				}
+				current = decimal(value);
+			}
+			size += Varints.sizeOfUnsignedLong(Varints.zigZag(current - prev));
+			prev = current;
+		}
+		return size;
+	}
+
+	private static long fixedLong(Value value) {
+		byte[] bytes = value.get();
+		long result = 0;
+		for (int i = 0; i < LONG_SIZE; ++i) {
+			result = (result << 8) | (bytes[i] & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the value is a decimal that {@link Long#toString(long)} writes
+	 * identically: an optional minus sign and no leading zeros.
+	 */
+	private static boolean isDecimal(Value value) {
+		byte[] bytes = value.get();
+		int length = value.getSize();
+		int start = length > 0 && bytes[0] == '-' ? 1 : 0;
+		int digits = length - start;
+		if (digits < 1 || digits > MAX_DECIMAL_DIGITS) {
+			return false;
+		}
+		if (bytes[start] == '0' && (digits > 1 || start == 1)) {
+			return false;
+		}
+		for (int i = start; i < length; ++i) {
+			if (bytes[i] < '0' || bytes[i] > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long decimal(Value value) {
+		byte[] bytes = value.get();
+		boolean negative = bytes[0] == '-';
+		long result = 0;
+		for (int i = negative ? 1 : 0; i < value.getSize(); ++i) {
+			result = result * 10 + (bytes[i] - '0');
+		}
+		return negative ? -result : result;
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.client;
+
+import java.util.List;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.data.Mutation;
+
+import com.jwsphere.accumulo.MutationCompression;
+
+/**
+ * <p>
+ * Applies batches of mutations compressed by a {@link MutationCompression}
+ * through a {@code BatchWriter}.
+ * </p>
+ *
+ * <p>
+ * Tablet servers only accept uncompressed {@code TMutation} objects, so this
+ * is meant for a relay process close to the cluster: producers send
+ * compressed batches over the constrained link and the relay decompresses and
+ * writes them.  The wrapped writer remains responsible for flushing and
+ * closing.
+ * </p>
+ */
+public class CompressedMutationWriter {
+
+	private final BatchWriter writer;
+	private final MutationCompression compression;
+
+	public CompressedMutationWriter(BatchWriter writer, MutationCompression compression) {
+		this.writer = writer;
+		this.compression = compression;
+	}
+
+	public BatchWriter getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Compresses a batch on the producer side.
+	 */
+	public byte[] compress(List<Mutation> mutations) {
+		return compression.compress(mutations);
+	}
+
+	/**
+	 * Decompresses a batch and adds its mutations to the writer.
+	 */
+	public void write(byte[] compressed) throws MutationsRejectedException {
+		writer.addMutations(compression.decompress(compressed));
+	}
+
+}
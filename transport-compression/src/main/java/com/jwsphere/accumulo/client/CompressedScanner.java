@@ -0,0 +1,122 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.client;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.ScannerBase;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.TKey;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.iterators.CompressingIterator;
+
+/**
+ * <p>
+ * Reads a scan compressed on the tablet servers by a {@link CompressingIterator},
+ * decompressing each batch on the client so that iteration yields the original
+ * entries.  Works with both a {@code Scanner} and a {@code BatchScanner} since
+ * every compressed entry holds a complete batch.
+ * </p>
+ *
+ * <p>
+ * The wrapped scanner remains responsible for ranges, columns, other
+ * iterators and closing.  Other scan iterators must have a lower priority
+ * than the compressing iterator.
+ * </p>
+ *
+ * <pre>
+ * Scanner scanner = connector.createScanner("table", auths);
+ * for (Entry&lt;Key, Value&gt; entry : new CompressedScanner(scanner, 100, "columnar", "deflate", 1000)) {
+ *   ...
+ * }
+ * </pre>
+ */
+public class CompressedScanner implements Iterable<Entry<Key, Value>> {
+
+	public static final String ITERATOR_NAME = "transportCompression";
+
+	private final ScannerBase scanner;
+	private final TransportCompression compression;
+
+	/**
+	 * Adds a {@link CompressingIterator} with the given priority and options
+	 * to the scanner.
+	 */
+	public CompressedScanner(ScannerBase scanner, int priority, String encoding, String codec, int batchSize) {
+		Map<String, String> options = CompressingIterator.options(encoding, codec, batchSize);
+		scanner.addScanIterator(new IteratorSetting(priority, ITERATOR_NAME, CompressingIterator.class, options));
+		this.scanner = scanner;
+		this.compression = CompressingIterator.createCompression(options);
+	}
+
+	public ScannerBase getScanner() {
+		return scanner;
+	}
+
+	public Iterator<Entry<Key, Value>> iterator() {
+		return decode(scanner.iterator(), compression);
+	}
+
+	/**
+	 * Decompresses batches on the executor while the caller consumes earlier
+	 * ones, see {@link ParallelDecoder}.  Batches keep their order unless the
+	 * wrapped scanner is a {@code BatchScanner}.
+	 */
+	public Iterator<Entry<Key, Value>> iterator(ExecutorService executor, int maxInFlight) {
+		boolean ordered = !(scanner instanceof BatchScanner);
+		return new ParallelDecoder(compression, executor, maxInFlight, ordered).decode(scanner.iterator());
+	}
+
+	/**
+	 * Decompresses entries produced by a {@link CompressingIterator} that was
+	 * configured for the given encoding.
+	 */
+	public static Iterator<Entry<Key, Value>> decode(final Iterator<Entry<Key, Value>> compressed,
+			final TransportCompression compression) {
+		return new AbstractIterator<Entry<Key, Value>>() {
+
+			private Iterator<KeyValue> batch;
+
+			@Override
+			protected Entry<Key, Value> computeNext() {
+				while (batch == null || !batch.hasNext()) {
+					if (!compressed.hasNext()) {
+						return endOfData();
+					}
+					batch = compression.decompressIterator(Collections.singletonList(payload(compressed.next().getValue())));
+				}
+				return batch.next();
+			}
+		};
+	}
+
+	static TKeyValue payload(Value value) {
+		return new TKeyValue(new TKey(), ByteBuffer.wrap(value.get(), 0, value.getSize()));
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.client;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.TransportCompression;
+
+/**
+ * <p>
+ * Decompresses the batches of a compressed scan on an executor so that the
+ * batches following the one being consumed are decoded in the background.
+ * At most a bounded number of batches are decoded ahead of the consumer, which
+ * bounds the memory held by decoded entries.  Two batches in flight amount to
+ * double buffering; more batches spread decoding over more threads.
+ * </p>
+ *
+ * <p>
+ * An ordered decoder returns batches in the order they were read, as a
+ * {@code Scanner} requires.  An unordered decoder returns batches as soon as
+ * they are decoded, which suits a {@code BatchScanner} whose results are
+ * unordered anyway.  Entries within a batch always keep their order.
+ * </p>
+ */
+public class ParallelDecoder {
+
+	private final TransportCompression compression;
+	private final ExecutorService executor;
+	private final int maxInFlight;
+	private final boolean ordered;
+
+	/**
+	 * @param maxInFlight the number of batches decoded concurrently
+	 * @param ordered whether batches are returned in the order they were read
+	 */
+	public ParallelDecoder(TransportCompression compression, ExecutorService executor, int maxInFlight,
+			boolean ordered) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one batch must be in flight.");
+		}
+		this.compression = compression;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Lazily decompresses entries produced by a compressing iterator.
+	 */
+	public Iterator<Entry<Key, Value>> decode(final Iterator<Entry<Key, Value>> compressed) {
+		final Iterator<List<KeyValue>> batches = ordered ? ordered(compressed) : unordered(compressed);
+		return new AbstractIterator<Entry<Key, Value>>() {
+
+			private Iterator<KeyValue> batch;
+
+			@Override
+			protected Entry<Key, Value> computeNext() {
+				while (batch == null || !batch.hasNext()) {
+					if (!batches.hasNext()) {
+						return endOfData();
+					}
+					batch = batches.next().iterator();
+				}
+				return batch.next();
+			}
+		};
+	}
+
+	private Iterator<List<KeyValue>> ordered(final Iterator<Entry<Key, Value>> compressed) {
+		return new AbstractIterator<List<KeyValue>>() {
+
+			private final Deque<Future<List<KeyValue>>> inFlight = new ArrayDeque<Future<List<KeyValue>>>();
+
+			@Override
+			protected List<KeyValue> computeNext() {
+				while (inFlight.size() < maxInFlight && compressed.hasNext()) {
+					inFlight.addLast(executor.submit(task(compressed.next().getValue())));
+				}
+				if (inFlight.isEmpty()) {
+					return endOfData();
+				}
+				return await(inFlight.removeFirst());
+			}
+		};
+	}
+
+	private Iterator<List<KeyValue>> unordered(final Iterator<Entry<Key, Value>> compressed) {
+		final CompletionService<List<KeyValue>> completion = new ExecutorCompletionService<List<KeyValue>>(executor);
+		return new AbstractIterator<List<KeyValue>>() {
+
+			private int inFlight = 0;
+
+			@Override
+			protected List<KeyValue> computeNext() {
+				while (inFlight < maxInFlight && compressed.hasNext()) {
+					completion.submit(task(compressed.next().getValue()));
+					++inFlight;
+				}
+				if (inFlight == 0) {
+					return endOfData();
+				}
+				try {
+					Future<List<KeyValue>> done = completion.take();
+					--inFlight;
+					return await(done);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	private Callable<List<KeyValue>> task(final Value value) {
+		return new Callable<List<KeyValue>>() {
+			public List<KeyValue> call() {
+				return compression.decompress(Collections.singletonList(CompressedScanner.payload(value)));
+			}
+		};
+	}
+
+	private static List<KeyValue> await(Future<List<KeyValue>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+}
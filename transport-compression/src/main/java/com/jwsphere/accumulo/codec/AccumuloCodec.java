@@ -0,0 +1,91 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.accumulo.core.file.rfile.bcfile.Compression;
+import org.apache.accumulo.core.file.rfile.bcfile.Compression.Algorithm;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+/**
+ * Adapts the compression algorithms that accumulo-core uses for RFile blocks
+ * (gz, snappy, lzo) so that they can be compared against the other codecs.
+ * Algorithms whose native libraries are not available will fail when a stream
+ * is first created.
+ */
+public class AccumuloCodec implements Codec {
+
+	public static final String PREFIX = "rfile:";
+
+	private final Algorithm algorithm;
+
+	public AccumuloCodec(String algorithmName) {
+		this(Compression.getCompressionAlgorithmByName(algorithmName));
+	}
+
+	public AccumuloCodec(Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public String getName() {
+		return PREFIX + algorithm.getName();
+	}
+
+	public OutputStream compress(OutputStream out) throws IOException {
+		final Compressor compressor = algorithm.getCompressor();
+		return new FilterOutputStream(algorithm.createCompressionStream(out, compressor, 0)) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					algorithm.returnCompressor(compressor);
+				}
+			}
+		};
+	}
+
+	public InputStream decompress(InputStream in) throws IOException {
+		final Decompressor decompressor = algorithm.getDecompressor();
+		return new FilterInputStream(algorithm.createDecompressionStream(in, decompressor, 0)) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					algorithm.returnDecompressor(decompressor);
+				}
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+}
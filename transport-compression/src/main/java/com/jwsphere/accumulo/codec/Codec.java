@@ -0,0 +1,38 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A byte-level compression algorithm applied to the encoded form of a batch.
+ * Closing a stream returned by a codec finishes the compressed data, releases
+ * any resources held by the codec and closes the underlying stream.
+ */
+public interface Codec {
+
+	/**
+	 * A short name identifying the codec and its settings.
+	 */
+	String getName();
+
+	OutputStream compress(OutputStream out) throws IOException;
+
+	InputStream decompress(InputStream in) throws IOException;
+
+}
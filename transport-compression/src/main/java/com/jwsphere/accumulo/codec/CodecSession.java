@@ -0,0 +1,40 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Applies a codec to the consecutive batches of a single scan while retaining
+ * state, such as the compression window, from one batch to the next.  Closing
+ * a stream returned by a session ends the current batch without closing the
+ * underlying stream.  Batches must be decompressed in the order in which they
+ * were compressed, and a session must not be used by multiple threads.
+ */
+public interface CodecSession {
+
+	OutputStream compress(OutputStream out) throws IOException;
+
+	InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Releases any resources held by the session.
+	 */
+	void close();
+
+}
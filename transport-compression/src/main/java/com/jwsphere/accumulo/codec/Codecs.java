@@ -0,0 +1,101 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.io.Files;
+
+/**
+ * Resolves codecs from the names reported by {@link Codec#getName()}.
+ */
+public final class Codecs {
+
+	public static final String DICTIONARY_PREFIX = "dict:";
+
+	private Codecs() {
+	}
+
+	/**
+	 * Returns the codec with the given name.  Names of the form
+	 * {@code rfile:<algorithm>} resolve to the RFile compression algorithm
+	 * of the same name, e.g. {@code rfile:snappy}, and names of the form
+	 * {@code dict:<file>} resolve to deflate with the preset dictionary
+	 * stored in the file.
+	 */
+	public static Codec forName(String name) {
+		String trimmed = name.trim();
+		if (trimmed.startsWith(AccumuloCodec.PREFIX)) {
+			return new AccumuloCodec(trimmed.substring(AccumuloCodec.PREFIX.length()));
+		}
+		if (trimmed.startsWith(DICTIONARY_PREFIX)) {
+			File file = new File(trimmed.substring(DICTIONARY_PREFIX.length()));
+			try {
+				return DeflateCodec.DEFAULT.withDictionary(Files.toByteArray(file));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Unable to read dictionary " + file, e);
+			}
+		}
+		for (Codec codec : builtIn()) {
+			if (codec.getName().equals(trimmed)) {
+				return codec;
+			}
+		}
+		throw new IllegalArgumentException("Unknown codec " + name);
+	}
+
+	/**
+	 * Starts a session for the codec, retaining state across batches when
+	 * the codec supports it and compressing each batch independently otherwise.
+	 */
+	public static CodecSession newSession(Codec codec) {
+		if (codec instanceof StatefulCodec) {
+			return ((StatefulCodec) codec).newSession();
+		}
+		return new StatelessCodecSession(codec);
+	}
+
+	/**
+	 * Parses a comma separated list of codec names.
+	 */
+	public static List<Codec> forNames(String names) {
+		List<Codec> codecs = new ArrayList<Codec>();
+		for (String name : names.split(",")) {
+			if (!name.trim().isEmpty()) {
+				codecs.add(forName(name));
+			}
+		}
+		return codecs;
+	}
+
+	/**
+	 * Codecs that are implemented in this project and always available.
+	 */
+	public static List<Codec> builtIn() {
+		List<Codec> codecs = new ArrayList<Codec>();
+		codecs.add(IdentityCodec.INSTANCE);
+		codecs.add(DeflateCodec.DEFAULT);
+		codecs.add(DeflateCodec.BEST_SPEED);
+		codecs.add(DeflateCodec.FILTERED);
+		codecs.add(DeflateCodec.HUFFMAN_ONLY);
+		codecs.add(LzCodec.DEFAULT);
+		return codecs;
+	}
+
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflate with a configurable compression level and strategy.  Lower levels
+ * and the {@code HUFFMAN_ONLY} strategy trade compression ratio for speed,
+ * while {@code FILTERED} favors data that is mostly small, somewhat random
+ * values such as the output of the relative key encoding.
+ *
+ * <p>
+ * Deflaters and inflaters are borrowed from bounded pools owned by the codec
+ * and returned when the stream is closed, so each codec instance should be
+ * shared rather than created per batch.
+ * </p>
+ *
+ * <p>
+ * An optional preset dictionary primes the compressor window with content
+ * that is expected to appear in the data, which recovers much of the ratio
+ * that is otherwise lost on small batches.  Both sides must use the same
+ * dictionary.
+ * </p>
+ *
+ * <p>
+ * Sessions keep the deflate window across the batches of a scan so that
+ * later batches can reference earlier ones.
+ * </p>
+ */
+public class DeflateCodec implements StatefulCodec {
+
+	public static final int DEFAULT_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+	/** Deflate can only reference the last 32KB, so larger dictionaries are wasted. */
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	public static final DeflateCodec DEFAULT = new DeflateCodec(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+	public static final DeflateCodec BEST_SPEED = new DeflateCodec(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+	public static final DeflateCodec FILTERED = new DeflateCodec(Deflater.DEFAULT_COMPRESSION, Deflater.FILTERED);
+	public static final DeflateCodec HUFFMAN_ONLY = new DeflateCodec(Deflater.DEFAULT_COMPRESSION, Deflater.HUFFMAN_ONLY);
+
+	private final int level;
+	private final int strategy;
+	private final byte[] dictionary;
+	private final DeflaterPool deflaters;
+	private final InflaterPool inflaters;
+
+	public DeflateCodec(int level, int strategy) {
+		this(level, strategy, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param poolSize maximum number of idle deflaters and inflaters retained,
+	 *        zero disables pooling
+	 */
+	public DeflateCodec(int level, int strategy, int poolSize) {
+		this(level, strategy, null, poolSize);
+	}
+
+	/**
+	 * @param dictionary preset dictionary, or null for none
+	 * @param poolSize maximum number of idle deflaters and inflaters retained,
+	 *        zero disables pooling
+	 */
+	public DeflateCodec(int level, int strategy, byte[] dictionary, int poolSize) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid deflate level " + level);
+		}
+		if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+			throw new IllegalArgumentException("Invalid deflate strategy " + strategy);
+		}
+		if (dictionary != null && dictionary.length > MAX_DICTIONARY_SIZE) {
+			dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+		}
+		this.level = level;
+		this.strategy = strategy;
+		this.dictionary = dictionary == null ? null : dictionary.clone();
+		this.deflaters = new DeflaterPool(poolSize, level, strategy);
+		this.inflaters = new InflaterPool(poolSize);
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Returns a codec with the same level and strategy that uses the given
+	 * preset dictionary.  Dictionaries longer than {@link #MAX_DICTIONARY_SIZE}
+	 * are truncated to their trailing bytes.
+	 */
+	public DeflateCodec withDictionary(byte[] dictionary) {
+		return new DeflateCodec(level, strategy, dictionary, deflaters.getCapacity());
+	}
+
+	public boolean hasDictionary() {
+		return dictionary != null;
+	}
+
+	public DeflaterPool getDeflaterPool() {
+		return deflaters;
+	}
+
+	public InflaterPool getInflaterPool() {
+		return inflaters;
+	}
+
+	public String getName() {
+		if (dictionary != null) {
+			return getBaseName() + "+dict(" + dictionary.length + ")";
+		}
+		return getBaseName();
+	}
+
+	private String getBaseName() {
+		if (level == Deflater.DEFAULT_COMPRESSION && strategy == Deflater.DEFAULT_STRATEGY) {
+			return "deflate";
+		} else if (level == Deflater.BEST_SPEED && strategy == Deflater.DEFAULT_STRATEGY) {
+			return "deflate-fast";
+		} else if (level == Deflater.DEFAULT_COMPRESSION && strategy == Deflater.FILTERED) {
+			return "deflate-filtered";
+		} else if (level == Deflater.DEFAULT_COMPRESSION && strategy == Deflater.HUFFMAN_ONLY) {
+			return "deflate-huffman";
+		}
+		return "deflate(level=" + level + ",strategy=" + strategy + ")";
+	}
+
+	public OutputStream compress(OutputStream out) {
+		return new PooledDeflaterOutputStream(out, deflaters, dictionary);
+	}
+
+	public InputStream decompress(InputStream in) {
+		return new PooledInflaterInputStream(in, inflaters, dictionary);
+	}
+
+	public CodecSession newSession() {
+		return new DeflateSession(deflaters, inflaters, dictionary);
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	private static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+
+		private final DeflaterPool pool;
+		private boolean released;
+
+		PooledDeflaterOutputStream(OutputStream out, DeflaterPool pool, byte[] dictionary) {
+			this(out, pool, pool.acquire());
+			if (dictionary != null) {
+				def.setDictionary(dictionary);
+			}
+		}
+
+		private PooledDeflaterOutputStream(OutputStream out, DeflaterPool pool, Deflater deflater) {
+			super(out, deflater);
+			this.pool = pool;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (!released) {
+					released = true;
+					pool.release(def);
+				}
+			}
+		}
+	}
+
+	private static class PooledInflaterInputStream extends InflaterInputStream {
+
+		private final InflaterPool pool;
+		private final byte[] dictionary;
+		private boolean released;
+
+		PooledInflaterInputStream(InputStream in, InflaterPool pool, byte[] dictionary) {
+			this(in, pool, pool.acquire(), dictionary);
+		}
+
+		private PooledInflaterInputStream(InputStream in, InflaterPool pool, Inflater inflater, byte[] dictionary) {
+			super(in, inflater);
+			this.pool = pool;
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			// the inflater reports end of data when it first needs the dictionary
+			if (n == -1 && inf.needsDictionary()) {
+				if (dictionary == null) {
+					throw new IOException("Stream requires a preset dictionary.");
+				}
+				inf.setDictionary(dictionary);
+				n = super.read(b, off, len);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (!released) {
+					released = true;
+					pool.release(inf);
+				}
+			}
+		}
+	}
+
+}
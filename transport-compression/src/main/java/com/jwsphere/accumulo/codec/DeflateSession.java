@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps a single deflater and inflater for the lifetime of a session.  Each
+ * batch ends with a sync flush rather than finishing the stream, so the
+ * following batch can reference the previous batches through the deflate
+ * window while every batch still ends on a byte boundary.
+ */
+class DeflateSession implements CodecSession {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final DeflaterPool deflaters;
+	private final InflaterPool inflaters;
+	private final byte[] dictionary;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private Deflater deflater;
+	private Inflater inflater;
+
+	DeflateSession(DeflaterPool deflaters, InflaterPool inflaters, byte[] dictionary) {
+		this.deflaters = deflaters;
+		this.inflaters = inflaters;
+		this.dictionary = dictionary;
+	}
+
+	public OutputStream compress(final OutputStream out) {
+		if (deflater == null) {
+			deflater = deflaters.acquire();
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+		}
+		return new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				deflater.setInput(b, off, len);
+				while (!deflater.needsInput()) {
+					int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+					out.write(buffer, 0, n);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				int n;
+				do {
+					n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					out.write(buffer, 0, n);
+				} while (n == buffer.length);
+				out.flush();
+			}
+		};
+	}
+
+	public InputStream decompress(final InputStream in) {
+		if (inflater == null) {
+			inflater = inflaters.acquire();
+		}
+		return new InputStream() {
+
+			private boolean eof;
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0) {
+					return 0;
+				}
+				try {
+					while (true) {
+						int n = inflater.inflate(b, off, len);
+						if (n > 0) {
+							return n;
+						}
+						if (inflater.needsDictionary()) {
+							if (dictionary == null) {
+								throw new IOException("Stream requires a preset dictionary.");
+							}
+							inflater.setDictionary(dictionary);
+						} else if (inflater.finished()) {
+							throw new IOException("Session stream was finished unexpectedly.");
+						} else if (!fill()) {
+							return -1;
+						}
+					}
+				} catch (DataFormatException e) {
+					throw new IOException(e);
+				}
+			}
+
+			/**
+			 * Consumes the remainder of the batch, including the sync flush
+			 * marker, so that the next batch starts with empty input.
+			 */
+			@Override
+			public void close() throws IOException {
+				byte[] remaining = new byte[1];
+				if (read(remaining, 0, 1) != -1) {
+					throw new IOException("Batch contains unread data.");
+				}
+			}
+
+			private boolean fill() throws IOException {
+				if (eof) {
+					return false;
+				}
+				int n = in.read(buffer, 0, buffer.length);
+				if (n == -1) {
+					eof = true;
+					return false;
+				}
+				inflater.setInput(buffer, 0, n);
+				return true;
+			}
+		};
+	}
+
+	public void close() {
+		if (deflater != null) {
+			deflaters.release(deflater);
+			deflater = null;
+		}
+		if (inflater != null) {
+			inflaters.release(inflater);
+			inflater = null;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.util.zip.Deflater;
+
+import com.jwsphere.accumulo.io.BoundedPool;
+
+/**
+ * Pools deflaters of a single level and strategy so that the native zlib
+ * context is reused across batches instead of being allocated per stream and
+ * only freed at finalization.
+ */
+public class DeflaterPool extends BoundedPool<Deflater> {
+
+	private final int level;
+	private final int strategy;
+
+	public DeflaterPool(int capacity, int level, int strategy) {
+		super(capacity);
+		this.level = level;
+		this.strategy = strategy;
+	}
+
+	@Override
+	protected Deflater create() {
+		Deflater deflater = new Deflater(level);
+		deflater.setStrategy(strategy);
+		return deflater;
+	}
+
+	@Override
+	protected void reset(Deflater deflater) {
+		// level and strategy survive a reset
+		deflater.reset();
+	}
+
+	@Override
+	protected void destroy(Deflater deflater) {
+		deflater.end();
+	}
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Passes bytes through unchanged.
+ */
+public class IdentityCodec implements Codec {
+
+	public static final IdentityCodec INSTANCE = new IdentityCodec();
+
+	private IdentityCodec() {
+	}
+
+	public String getName() {
+		return "none";
+	}
+
+	public OutputStream compress(OutputStream out) {
+		return out;
+	}
+
+	public InputStream decompress(InputStream in) {
+		return in;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.util.zip.Inflater;
+
+import com.jwsphere.accumulo.io.BoundedPool;
+
+/**
+ * Pools inflaters so that the native zlib context is reused across batches.
+ */
+public class InflaterPool extends BoundedPool<Inflater> {
+
+	public InflaterPool(int capacity) {
+		super(capacity);
+	}
+
+	@Override
+	protected Inflater create() {
+		return new Inflater();
+	}
+
+	@Override
+	protected void reset(Inflater inflater) {
+		inflater.reset();
+	}
+
+	@Override
+	protected void destroy(Inflater inflater) {
+		inflater.end();
+	}
+
+}
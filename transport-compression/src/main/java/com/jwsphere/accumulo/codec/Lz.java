@@ -0,0 +1,184 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A small LZ77 block compressor in the spirit of LZ4.  Matches of at least four
+ * bytes are located with a single-entry hash table and emitted as sequences of
+ * a token, literal bytes and a two byte back reference.  There is no entropy
+ * coding stage which keeps both directions cheap.
+ *
+ * <p>
+ * A sequence is a token byte holding the literal length in the high nibble and
+ * the match length minus four in the low nibble, followed by any extra literal
+ * length bytes, the literals, a little-endian offset and any extra match length
+ * bytes.  A nibble value of fifteen indicates that the length continues in
+ * following bytes, each of which is added to the length until one is less than
+ * 255.  The final sequence of a block contains only literals.
+ * </p>
+ */
+final class Lz {
+
+	static final int MIN_MATCH = 4;
+	static final int MAX_OFFSET = 0xFFFF;
+
+	private static final int HASH_LOG = 14;
+	private static final int HASH_SIZE = 1 << HASH_LOG;
+	private static final int RUN_MASK = 0x0F;
+
+	private Lz() {
+	}
+
+	/**
+	 * Worst case size of the compressed output for the given input length.
+	 */
+	static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	static int[] newTable() {
+		return new int[HASH_SIZE];
+	}
+
+	/**
+	 * Compresses the source range into the destination starting at offset
+	 * zero and returns the number of bytes written.  The destination must
+	 * hold at least {@link #maxCompressedLength(int)} bytes.
+	 */
+	static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int[] table) {
+		// table entries are stored offset by one so that zero means empty
+		Arrays.fill(table, 0);
+		int end = srcOff + srcLen;
+		int matchLimit = end - MIN_MATCH;
+		int anchor = srcOff;
+		int i = srcOff;
+		int op = 0;
+		while (i <= matchLimit) {
+			int sequence = readInt(src, i);
+			int h = hash(sequence);
+			int ref = table[h] - 1;
+			table[h] = i + 1;
+			if (ref >= srcOff && i - ref <= MAX_OFFSET && readInt(src, ref) == sequence) {
+				int matchLength = MIN_MATCH;
+				while (i + matchLength < end && src[ref + matchLength] == src[i + matchLength]) {
+					++matchLength;
+				}
+				op = writeSequence(dst, op, src, anchor, i - anchor, i - ref, matchLength);
+				i += matchLength;
+				anchor = i;
+			} else {
+				++i;
+			}
+		}
+		return writeLiterals(dst, op, src, anchor, end - anchor, 0);
+	}
+
+	/**
+	 * Decompresses the source range into the destination and returns the
+	 * number of bytes produced.
+	 */
+	static int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+		int ip = srcOff;
+		int end = srcOff + srcLen;
+		int op = dstOff;
+		int dstEnd = dstOff + dstLen;
+		try {
+			while (ip < end) {
+				int token = src[ip++] & 0xFF;
+				int literalLength = token >>> 4;
+				if (literalLength == RUN_MASK) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						literalLength += b;
+					} while (b == 0xFF);
+				}
+				if (op + literalLength > dstEnd || ip + literalLength > end) {
+					throw new IOException("Corrupt LZ block, literals overrun the buffer.");
+				}
+				System.arraycopy(src, ip, dst, op, literalLength);
+				ip += literalLength;
+				op += literalLength;
+				if (ip == end) {
+					break;
+				}
+
+				int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+				ip += 2;
+				int matchLength = token & RUN_MASK;
+				if (matchLength == RUN_MASK) {
+					int b;
+					do {
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					} while (b == 0xFF);
+				}
+				matchLength += MIN_MATCH;
+				int ref = op - offset;
+				if (offset == 0 || ref < dstOff || op + matchLength > dstEnd) {
+					throw new IOException("Corrupt LZ block, invalid match.");
+				}
+				// byte by byte since the match may overlap the output
+				for (int j = 0; j < matchLength; ++j) {
+					dst[op++] = dst[ref++];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ block, truncated input.");
+		}
+		return op - dstOff;
+	}
+
+	private static int writeSequence(byte[] dst, int op, byte[] src, int literalOff, int literalLength, int offset, int matchLength) {
+		op = writeLiterals(dst, op, src, literalOff, literalLength, Math.min(matchLength - MIN_MATCH, RUN_MASK));
+		dst[op++] = (byte) offset;
+		dst[op++] = (byte) (offset >>> 8);
+		if (matchLength - MIN_MATCH >= RUN_MASK) {
+			op = writeLength(dst, op, matchLength - MIN_MATCH - RUN_MASK);
+		}
+		return op;
+	}
+
+	private static int writeLiterals(byte[] dst, int op, byte[] src, int literalOff, int literalLength, int matchNibble) {
+		dst[op++] = (byte) ((Math.min(literalLength, RUN_MASK) << 4) | matchNibble);
+		if (literalLength >= RUN_MASK) {
+			op = writeLength(dst, op, literalLength - RUN_MASK);
+		}
+		System.arraycopy(src, literalOff, dst, op, literalLength);
+		return op + literalLength;
+	}
+
+	private static int writeLength(byte[] dst, int op, int length) {
+		while (length >= 0xFF) {
+			dst[op++] = (byte) 0xFF;
+			length -= 0xFF;
+		}
+		dst[op++] = (byte) length;
+		return op;
+	}
+
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+}
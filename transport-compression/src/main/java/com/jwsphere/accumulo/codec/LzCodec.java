@@ -0,0 +1,235 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.jwsphere.accumulo.io.Varints;
+
+/**
+ * A dependency-free LZ77 codec that favors speed over ratio.  Data is split into
+ * blocks of up to {@code blockSize} bytes which are compressed independently.
+ * Each block is written as its uncompressed length and compressed length followed
+ * by the compressed bytes, or the raw bytes when the compressed length is zero
+ * because the block did not compress.  An uncompressed length of zero ends the
+ * stream.
+ */
+public class LzCodec implements Codec {
+
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	public static final LzCodec DEFAULT = new LzCodec(DEFAULT_BLOCK_SIZE);
+
+	private final int blockSize;
+
+	public LzCodec(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive.");
+		}
+		this.blockSize = blockSize;
+	}
+
+	public String getName() {
+		return blockSize == DEFAULT_BLOCK_SIZE ? "lz" : "lz(block=" + blockSize + ")";
+	}
+
+	public OutputStream compress(OutputStream out) {
+		return new LzOutputStream(out, blockSize);
+	}
+
+	public InputStream decompress(InputStream in) {
+		return new LzInputStream(in, blockSize);
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	private static class LzOutputStream extends OutputStream {
+
+		private final DataOutputStream out;
+		private final byte[] block;
+		private final byte[] compressed;
+		private final int[] table = Lz.newTable();
+		private int position;
+		private boolean closed;
+
+		LzOutputStream(OutputStream out, int blockSize) {
+			this.out = new DataOutputStream(out);
+			this.block = new byte[blockSize];
+			this.compressed = new byte[Lz.maxCompressedLength(blockSize)];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (position == block.length) {
+				writeBlock();
+			}
+			block[position++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (position == block.length) {
+					writeBlock();
+				}
+				int n = Math.min(len, block.length - position);
+				System.arraycopy(b, off, block, position, n);
+				position += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writeBlock();
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				writeBlock();
+				Varints.writeUnsignedInt(out, 0);
+			} finally {
+				out.close();
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if (position == 0) {
+				return;
+			}
+			int length = Lz.compress(block, 0, position, compressed, table);
+			Varints.writeUnsignedInt(out, position);
+			if (length < position) {
+				Varints.writeUnsignedInt(out, length);
+				out.write(compressed, 0, length);
+			} else {
+				Varints.writeUnsignedInt(out, 0);
+				out.write(block, 0, position);
+			}
+			position = 0;
+		}
+	}
+
+	private static class LzInputStream extends InputStream {
+
+		private final DataInputStream in;
+		private final int blockSize;
+		private byte[] block;
+		private byte[] compressed;
+		private int position;
+		private int limit;
+		private boolean eof;
+
+		LzInputStream(InputStream in, int blockSize) {
+			this.in = new DataInputStream(in);
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensureAvailable()) {
+				return -1;
+			}
+			return block[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!ensureAvailable()) {
+				return -1;
+			}
+			int n = Math.min(len, limit - position);
+			System.arraycopy(block, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return limit - position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private boolean ensureAvailable() throws IOException {
+			while (position == limit) {
+				if (eof || !readBlock()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean readBlock() throws IOException {
+			int length;
+			try {
+				length = Varints.readUnsignedInt(in);
+			} catch (EOFException e) {
+				throw new IOException("LZ stream ended without a terminating block.");
+			}
+			if (length == 0) {
+				eof = true;
+				return false;
+			}
+			if (length < 0 || length > blockSize) {
+				throw new IOException("Corrupt LZ stream, invalid block length " + length);
+			}
+			if (block == null) {
+				block = new byte[blockSize];
+			}
+			int compressedLength = Varints.readUnsignedInt(in);
+			if (compressedLength == 0) {
+				in.readFully(block, 0, length);
+			} else {
+				if (compressedLength < 0 || compressedLength > Lz.maxCompressedLength(blockSize)) {
+					throw new IOException("Corrupt LZ stream, invalid compressed length " + compressedLength);
+				}
+				if (compressed == null || compressed.length < compressedLength) {
+					compressed = new byte[Lz.maxCompressedLength(blockSize)];
+				}
+				in.readFully(compressed, 0, compressedLength);
+				if (Lz.decompress(compressed, 0, compressedLength, block, 0, length) != length) {
+					throw new IOException("Corrupt LZ stream, block length mismatch.");
+				}
+			}
+			position = 0;
+			limit = length;
+			return true;
+		}
+	}
+
+}
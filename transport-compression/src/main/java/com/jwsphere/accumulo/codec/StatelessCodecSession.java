@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.codec;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A session for codecs without cross-batch state which compresses each batch
+ * independently.
+ */
+class StatelessCodecSession implements CodecSession {
+
+	private final Codec codec;
+
+	StatelessCodecSession(Codec codec) {
+		this.codec = codec;
+	}
+
+	public OutputStream compress(OutputStream out) throws IOException {
+		// the codec stream closes its target, which the session must leave open
+		return codec.compress(new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		});
+	}
+
+	public InputStream decompress(InputStream in) throws IOException {
+		return codec.decompress(new FilterInputStream(in) {
+			@Override
+			public void close() {
+			}
+		});
+	}
+
+	public void close() {
+	}
+
+}
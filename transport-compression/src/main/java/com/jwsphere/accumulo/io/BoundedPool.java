@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.io;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe pool of reusable objects.  Acquiring never blocks;
+ * a new object is created when the pool is empty and objects released to a
+ * full pool are destroyed.  Hit, miss and discard counts are tracked so the
+ * pool size can be tuned for the observed concurrency.
+ */
+public abstract class BoundedPool<T> {
+
+	private final int capacity;
+	private final BlockingQueue<T> pool;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong discards = new AtomicLong();
+
+	protected BoundedPool(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Pool capacity must not be negative.");
+		}
+		this.capacity = capacity;
+		// an array blocking queue requires a positive capacity
+		this.pool = capacity == 0 ? null : new ArrayBlockingQueue<T>(capacity);
+	}
+
+	protected abstract T create();
+
+	/**
+	 * Restores the object to a state where it can be handed out again.
+	 */
+	protected abstract void reset(T object);
+
+	/**
+	 * Releases any resources held by an object that will not be reused.
+	 */
+	protected abstract void destroy(T object);
+
+	/**
+	 * Whether a released object should be returned to the pool.
+	 */
+	protected boolean isReusable(T object) {
+		return true;
+	}
+
+	public T acquire() {
+		T object = pool == null ? null : pool.poll();
+		if (object != null) {
+			hits.incrementAndGet();
+			return object;
+		}
+		misses.incrementAndGet();
+		return create();
+	}
+
+	public void release(T object) {
+		reset(object);
+		if (pool == null || !isReusable(object) || !pool.offer(object)) {
+			discards.incrementAndGet();
+			destroy(object);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of objects currently idle in the pool.
+	 */
+	public int getIdle() {
+		return pool == null ? 0 : pool.size();
+	}
+
+	/**
+	 * Number of acquisitions satisfied by a pooled object.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of acquisitions that required creating a new object.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of released objects destroyed because the pool was full or
+	 * they were not reusable.
+	 */
+	public long getDiscards() {
+		return discards.get();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[capacity=" + capacity + ", idle=" + getIdle() + ", hits=" + getHits()
+				+ ", misses=" + getMisses() + ", discards=" + getDiscards() + "]";
+	}
+
+}
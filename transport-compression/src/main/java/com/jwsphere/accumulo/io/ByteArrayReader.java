@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.io;
+
+import java.io.IOException;
+
+/**
+ * Reads big-endian primitives and varints from a region of a byte array
+ * while tracking the current position, so callers can record offsets into
+ * the array instead of copying bytes out of it.  Reading past the end of the
+ * region raises an {@link IOException}.
+ */
+public class ByteArrayReader {
+
+	private final byte[] bytes;
+	private final int limit;
+	private int position;
+
+	public ByteArrayReader(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("Region exceeds the array bounds.");
+		}
+		this.bytes = bytes;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	public byte[] array() {
+		return bytes;
+	}
+
+	public int position() {
+		return position;
+	}
+
+	public int remaining() {
+		return limit - position;
+	}
+
+	/**
+	 * Advances past {@code length} bytes and returns the offset at which they start.
+	 */
+	public int skip(int length) throws IOException {
+		require(length);
+		int start = position;
+		position += length;
+		return start;
+	}
+
+	/**
+	 * Returns a reader over the next {@code length} bytes and advances past them.
+	 */
+	public ByteArrayReader slice(int length) throws IOException {
+		return new ByteArrayReader(bytes, skip(length), length);
+	}
+
+	public byte readByte() throws IOException {
+		require(1);
+		return bytes[position++];
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public int readInt() throws IOException {
+		require(4);
+		int value = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+				| ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+		position += 4;
+		return value;
+	}
+
+	public long readLong() throws IOException {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	public int readUnsignedVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer.");
+	}
+
+	public long readUnsignedVarlong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length long.");
+	}
+
+	private void require(int length) throws IOException {
+		if (length < 0 || length > limit - position) {
+			throw new IOException("Attempted to read past the end of the buffer.");
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.io;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream that writes into a {@link ByteBuffer}, growing it when
+ * necessary.  Unlike {@code ByteArrayOutputStream}, the written bytes are
+ * exposed as a view of the underlying buffer rather than a copy, and the
+ * buffer may be direct and may be reused after a {@link #reset()}.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final boolean direct;
+	private ByteBuffer buffer;
+	private int start;
+
+	public ByteBufferOutputStream() {
+		this(DEFAULT_CAPACITY, false);
+	}
+
+	public ByteBufferOutputStream(int initialCapacity, boolean direct) {
+		this(direct ? ByteBuffer.allocateDirect(initialCapacity) : ByteBuffer.allocate(initialCapacity));
+	}
+
+	/**
+	 * Writes into the supplied buffer starting at its current position.  If
+	 * the remaining space is exhausted a larger buffer of the same kind is
+	 * allocated and the supplied buffer is no longer written to.
+	 */
+	public ByteBufferOutputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.direct = buffer.isDirect();
+		this.start = buffer.position();
+	}
+
+	@Override
+	public void write(int b) {
+		ensureRemaining(1);
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureRemaining(len);
+		buffer.put(b, off, len);
+	}
+
+	/**
+	 * Writes the remaining bytes of the source without modifying its position.
+	 */
+	public void write(ByteBuffer src) {
+		ensureRemaining(src.remaining());
+		buffer.put(src.duplicate());
+	}
+
+	/**
+	 * Number of bytes written since construction or the last reset.
+	 */
+	public int size() {
+		return buffer.position() - start;
+	}
+
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Discards the written bytes so the buffer can be reused.  Views returned
+	 * by {@link #toByteBuffer()} must no longer be in use.
+	 */
+	public void reset() {
+		buffer.position(start);
+		buffer.limit(buffer.capacity());
+	}
+
+	/**
+	 * Returns a view of the bytes written so far.  The view shares content
+	 * with this stream and is only valid until the stream is reset or written
+	 * to again.
+	 */
+	public ByteBuffer toByteBuffer() {
+		ByteBuffer view = buffer.duplicate();
+		view.flip();
+		view.position(start);
+		return view.slice();
+	}
+
+	private void ensureRemaining(int length) {
+		if (buffer.remaining() >= length) {
+			return;
+		}
+		int required = size() + length;
+		if (required < 0) {
+			throw new OutOfMemoryError("Buffer size exceeds the maximum array size.");
+		}
+		int capacity = Math.max(required, Math.max(buffer.capacity() - start, 16) * 2);
+		if (capacity < 0) {
+			capacity = Integer.MAX_VALUE;
+		}
+		ByteBuffer grown = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		grown.put(toByteBuffer());
+		buffer = grown;
+		start = 0;
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.io;
+
+/**
+ * Pools output buffers so that multi-megabyte batches do not allocate a new
+ * buffer per encode.  Buffers that grew beyond {@code maxRetainedCapacity}
+ * are dropped on release rather than pinning a large amount of memory.
+ */
+public class ByteBufferPool extends BoundedPool<ByteBufferOutputStream> {
+
+	private final int initialCapacity;
+	private final int maxRetainedCapacity;
+	private final boolean direct;
+
+	public ByteBufferPool(int capacity, int initialCapacity, int maxRetainedCapacity, boolean direct) {
+		super(capacity);
+		this.initialCapacity = initialCapacity;
+		this.maxRetainedCapacity = maxRetainedCapacity;
+		this.direct = direct;
+	}
+
+	@Override
+	protected ByteBufferOutputStream create() {
+		return new ByteBufferOutputStream(initialCapacity, direct);
+	}
+
+	@Override
+	protected void reset(ByteBufferOutputStream buffer) {
+		buffer.reset();
+	}
+
+	@Override
+	protected void destroy(ByteBufferOutputStream buffer) {
+		// heap and direct buffers are reclaimed by the garbage collector
+	}
+
+	@Override
+	protected boolean isReusable(ByteBufferOutputStream buffer) {
+		return buffer.capacity() <= maxRetainedCapacity;
+	}
+
+}
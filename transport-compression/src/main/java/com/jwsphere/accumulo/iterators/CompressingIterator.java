@@ -0,0 +1,208 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.iterators;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+import com.google.common.base.Optional;
+import com.jwsphere.accumulo.BatchBudget;
+import com.jwsphere.accumulo.CompressionStatistics;
+import com.jwsphere.accumulo.Encodings;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.codec.Codecs;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+/**
+ * <p>
+ * Compresses the entries of a scan on the tablet server.  Consecutive entries
+ * from the source are collected into batches and each batch is emitted as a
+ * single synthetic entry whose value is the batch compressed by a
+ * {@link TransportCompression} and whose key is the last key of the batch.
+ * Since the key is the last key of the batch, a scan that the tablet server
+ * resumes after the synthetic entry continues with the entry following the
+ * batch.  Use a {@link com.jwsphere.accumulo.client.CompressedScanner} to read
+ * the original entries on the client.
+ * </p>
+ *
+ * <p>
+ * The iterator must have the highest priority of the scan iterators, and the
+ * encoding must produce a singleton collection, which rules out the default
+ * encoding.
+ * </p>
+ */
+public class CompressingIterator implements SortedKeyValueIterator<Key, Value>, OptionDescriber {
+
+	public static final String ENCODING_OPTION = "encoding";
+	public static final String CODEC_OPTION = "codec";
+	public static final String BATCH_SIZE_OPTION = "batchSize";
+	public static final String BATCH_BYTES_OPTION = "batchBytes";
+	public static final String BATCH_COMPRESSED_BYTES_OPTION = "batchCompressedBytes";
+
+	public static final String DEFAULT_ENCODING = "columnar";
+	public static final String DEFAULT_CODEC = "deflate";
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final ByteBufferOutputStream buffer = new ByteBufferOutputStream();
+	private SortedKeyValueIterator<Key, Value> source;
+	private Map<String, String> options;
+	private TransportCompression compression;
+	private BatchBudget budget;
+	private Key topKey;
+	private Value topValue;
+
+	/**
+	 * Creates the options of the iterator for the given encoding, codec and
+	 * number of entries per batch.
+	 */
+	public static Map<String, String> options(String encoding, String codec, int batchSize) {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(ENCODING_OPTION, encoding);
+		options.put(CODEC_OPTION, codec);
+		options.put(BATCH_SIZE_OPTION, Integer.toString(batchSize));
+		return options;
+	}
+
+	/**
+	 * Creates the encoding described by the iterator options, which the client
+	 * uses to decompress the batches.
+	 */
+	public static TransportCompression createCompression(Map<String, String> options) {
+		String encoding = Optional.fromNullable(options.get(ENCODING_OPTION)).or(DEFAULT_ENCODING);
+		String codec = Optional.fromNullable(options.get(CODEC_OPTION)).or(DEFAULT_CODEC);
+		return Encodings.forName(encoding, Codecs.forName(codec));
+	}
+
+	/**
+	 * Caps batches by the number of entries and, when the batch bytes options
+	 * are set, by their estimated uncompressed size and by a target compressed
+	 * size.
+	 */
+	private static BatchBudget getBudget(Map<String, String> options) {
+		String batchSize = options.get(BATCH_SIZE_OPTION);
+		BatchBudget budget = BatchBudget.entries(batchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize));
+		String batchBytes = options.get(BATCH_BYTES_OPTION);
+		if (batchBytes != null) {
+			budget = budget.withMaxBytes(Long.parseLong(batchBytes));
+		}
+		String batchCompressedBytes = options.get(BATCH_COMPRESSED_BYTES_OPTION);
+		if (batchCompressedBytes != null) {
+			budget = budget.withCompressedBytes(Long.parseLong(batchCompressedBytes));
+		}
+		return budget;
+	}
+
+	public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env)
+			throws IOException {
+		this.source = source;
+		this.options = new HashMap<String, String>(options);
+		this.compression = createCompression(options);
+		this.budget = getBudget(options);
+	}
+
+	public boolean hasTop() {
+		return topKey != null;
+	}
+
+	public void next() throws IOException {
+		compressBatch();
+	}
+
+	public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+		source.seek(range, columnFamilies, inclusive);
+		compressBatch();
+	}
+
+	public Key getTopKey() {
+		return topKey;
+	}
+
+	public Value getTopValue() {
+		return topValue;
+	}
+
+	public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+		CompressingIterator copy = new CompressingIterator();
+		try {
+			copy.init(source.deepCopy(env), options, env);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return copy;
+	}
+
+	private void compressBatch() throws IOException {
+		List<KeyValue> batch = new ArrayList<KeyValue>(Math.min(budget.getMaxEntries(), DEFAULT_BATCH_SIZE));
+		long maxBytes = budget.getMaxBytes();
+		long bytes = 0;
+		while (source.hasTop()) {
+			long size = BatchBudget.sizeOf(source.getTopKey(), source.getTopValue());
+			if (!budget.fits(batch.size(), bytes, size, maxBytes)) {
+				break;
+			}
+			// the source may reuse its key and value
+			batch.add(new KeyValue(new Key(source.getTopKey()), new Value(source.getTopValue())));
+			bytes += size;
+			source.next();
+		}
+		if (batch.isEmpty()) {
+			topKey = null;
+			topValue = null;
+			return;
+		}
+
+		buffer.reset();
+		List<TKeyValue> compressed = compression.compress(batch, buffer);
+		if (compressed.size() != 1) {
+			throw new IllegalArgumentException(compression.getName() + " did not produce a singleton.");
+		}
+		topKey = batch.get(batch.size() - 1).getKey();
+		topValue = new Value(compressed.get(0).bufferForValue());
+		budget.observe(new CompressionStatistics(compression.getName(), bytes, topValue.getSize(), batch.size()));
+	}
+
+	public IteratorOptions describeOptions() {
+		Map<String, String> named = new HashMap<String, String>();
+		named.put(ENCODING_OPTION, "relativekey, frontcoded, columnar, columnar-dict, columnar-typed, thrift, adaptive or framed (default " + DEFAULT_ENCODING + ")");
+		named.put(CODEC_OPTION, "byte-level codec name (default " + DEFAULT_CODEC + ")");
+		named.put(BATCH_SIZE_OPTION, "entries per compressed batch (default " + DEFAULT_BATCH_SIZE + ")");
+		named.put(BATCH_BYTES_OPTION, "estimated uncompressed bytes per compressed batch (default unlimited)");
+		named.put(BATCH_COMPRESSED_BYTES_OPTION, "target compressed bytes per batch, adapted to the observed "
+				+ "compression ratio (default unlimited)");
+		return new IteratorOptions("compressing", "compresses batches of entries into single entries", named, null);
+	}
+
+	public boolean validateOptions(Map<String, String> options) {
+		createCompression(options);
+		getBudget(options);
+		return true;
+	}
+
+}
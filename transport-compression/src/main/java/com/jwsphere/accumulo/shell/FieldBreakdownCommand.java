@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.shell;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.interpret.ScanInterpreter;
+import org.apache.accumulo.shell.Shell;
+import org.apache.accumulo.shell.commands.OptUtil;
+import org.apache.accumulo.shell.commands.ScanCommand;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.google.common.base.Optional;
+import com.jwsphere.accumulo.FieldBreakdown;
+import com.jwsphere.accumulo.Scans;
+
+/**
+ * <p>
+ * A command that breaks the bytes of a scan down by field, reporting for the
+ * row, column family, qualifier, visibility, timestamp and value the raw
+ * bytes, the bytes after relative encoding, the number of distinct values and
+ * an entropy estimate (see {@link FieldBreakdown}).
+ * </p>
+ *
+ * <p>
+ * Arguments are the same as the scan command with the addition of an
+ * argument to control the batch size, within which relative encoding
+ * applies, and an argument to examine only every nth batch.
+ * </p>
+ *
+ * <h3>
+ * Usage Example:
+ * </h3>
+ * <p>
+ * {@code TransportCompressionAnalyzer::fieldbreakdown -t my_table --batch-size 1000 --sample-every 10 }
+ * <p>
+ */
+public class FieldBreakdownCommand extends ScanCommand {
+
+	private Option batchSizeOpt;
+	private Option sampleEveryOpt;
+
+	@Override
+	public Options getOptions() {
+		batchSizeOpt = new Option(null, "batch-size", true, "scanner batch size");
+		batchSizeOpt.setRequired(false);
+		batchSizeOpt.setArgName("int");
+
+		sampleEveryOpt = new Option(null, "sample-every", true, "examine only every nth batch of the scan");
+		sampleEveryOpt.setRequired(false);
+		sampleEveryOpt.setArgName("int");
+
+		Options o = super.getOptions();
+		o.addOption(batchSizeOpt);
+		o.addOption(sampleEveryOpt);
+		return o;
+	}
+
+	@Override
+	public int execute(final String fullCommand, final CommandLine cl, final Shell shellState) throws Exception {
+		final String tableName = OptUtil.getTableOpt(cl, shellState);
+
+		final ScanInterpreter interpeter = getInterpreter(cl, tableName, shellState);
+
+		// handle first argument, if present, the authorizations list to
+		// scan with
+		final Authorizations auths = getAuths(cl, shellState);
+		final Scanner scanner = shellState.getConnector().createScanner(tableName, auths);
+
+		// handle session-specific scan iterators
+		addScanIterators(shellState, cl, scanner, tableName);
+
+		// handle remaining optional arguments
+		scanner.setRange(getRange(cl, interpeter));
+
+		// handle columns
+		fetchColumns(cl, scanner, interpeter);
+
+		// set timeout
+		scanner.setTimeout(getTimeout(cl), TimeUnit.MILLISECONDS);
+		scanner.setBatchSize(Integer.parseInt(Optional.fromNullable(cl.getOptionValue(batchSizeOpt.getLongOpt())).or("1000")));
+
+		Iterator<List<KeyValue>> batched = Scans.toBatchIterator(scanner.iterator(), scanner.getBatchSize());
+		if (cl.hasOption(sampleEveryOpt.getLongOpt())) {
+			batched = Scans.sampleEvery(batched, Integer.parseInt(cl.getOptionValue(sampleEveryOpt.getLongOpt())));
+		}
+
+		FieldBreakdown breakdown = new FieldBreakdown();
+		while (batched.hasNext()) {
+			breakdown.add(batched.next());
+		}
+		shellState.printLines(breakdown.report().iterator(), true);
+		return 0;
+	}
+
+	@Override
+	public String description() {
+		return "prints the bytes of a scan broken down by field";
+	}
+
+	@Override
+	public int numArgs() {
+		return 0;
+	}
+
+}
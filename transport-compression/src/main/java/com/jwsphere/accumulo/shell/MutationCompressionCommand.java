@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.shell;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.interpret.ScanInterpreter;
+import org.apache.accumulo.shell.Shell;
+import org.apache.accumulo.shell.commands.OptUtil;
+import org.apache.accumulo.shell.commands.ScanCommand;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterators;
+import com.jwsphere.accumulo.CompressionStatistics;
+import com.jwsphere.accumulo.CompressionSummary;
+import com.jwsphere.accumulo.MutationCompression;
+import com.jwsphere.accumulo.RelativeMutationCompression;
+import com.jwsphere.accumulo.Scans;
+import com.jwsphere.accumulo.ThriftMutationCompression;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.Codecs;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+
+/**
+ * <p>
+ * A command that evaluates the compression of the mutations a
+ * {@code BatchWriter} would send to write the scanned entries, grouping
+ * consecutive entries of a row into one mutation.  Currently supported
+ * algorithms include : <br>
+ *
+ *   ThriftMutation - passes the compact thrift {@code TMutation} list through a codec <br>
+ *   RelativeMutation - relative rows, column dictionaries and delta timestamps <br>
+ *
+ * </p>
+ *
+ * <p>
+ * Arguments are the same as the scan command with the addition of arguments
+ * controlling the number of mutations per batch and additional byte-level
+ * codecs (see {@link Codecs}).  As with {@code scancompression},
+ * {@code --bandwidth} sets the link speed used to estimate the effective
+ * transfer time and {@code --summary} prints totals and a ranking instead of
+ * the statistics of every batch.
+ * </p>
+ *
+ * <h3>
+ * Usage Example:
+ * </h3>
+ * <p>
+ * {@code TransportCompressionAnalyzer::mutationcompression -t my_table --batch-size 1000 --summary }
+ * <p>
+ */
+public class MutationCompressionCommand extends ScanCommand {
+
+	private Option batchSizeOpt;
+	private Option codecsOpt;
+	private Option bandwidthOpt;
+	private Option summaryOpt;
+
+	@Override
+	public Options getOptions() {
+		batchSizeOpt = new Option(null, "batch-size", true, "mutations per batch");
+		batchSizeOpt.setRequired(false);
+		batchSizeOpt.setArgName("int");
+
+		codecsOpt = new Option(null, "codecs", true, "comma separated byte-level codecs to evaluate in addition to "
+				+ "the defaults, e.g. deflate-fast,lz");
+		codecsOpt.setRequired(false);
+		codecsOpt.setArgName("codecs");
+
+		bandwidthOpt = new Option(null, "bandwidth", true, "link bandwidth in gigabits per second used to "
+				+ "estimate the effective transfer time, defaults to 1");
+		bandwidthOpt.setRequired(false);
+		bandwidthOpt.setArgName("gbps");
+
+		summaryOpt = new Option(null, "summary", false, "print totals, percentiles and a ranking for all batches "
+				+ "instead of statistics for every batch");
+		summaryOpt.setRequired(false);
+
+		Options o = super.getOptions();
+		o.addOption(batchSizeOpt);
+		o.addOption(codecsOpt);
+		o.addOption(bandwidthOpt);
+		o.addOption(summaryOpt);
+		return o;
+	}
+
+	@Override
+	public int execute(final String fullCommand, final CommandLine cl, final Shell shellState) throws Exception {
+		final String tableName = OptUtil.getTableOpt(cl, shellState);
+
+		final ScanInterpreter interpeter = getInterpreter(cl, tableName, shellState);
+
+		// handle first argument, if present, the authorizations list to
+		// scan with
+		final Authorizations auths = getAuths(cl, shellState);
+		final Scanner scanner = shellState.getConnector().createScanner(tableName, auths);
+
+		// handle session-specific scan iterators
+		addScanIterators(shellState, cl, scanner, tableName);
+
+		// handle remaining optional arguments
+		scanner.setRange(getRange(cl, interpeter));
+
+		// handle columns
+		fetchColumns(cl, scanner, interpeter);
+
+		// set timeout
+		scanner.setTimeout(getTimeout(cl), TimeUnit.MILLISECONDS);
+
+		int batchSize = Integer.parseInt(Optional.fromNullable(cl.getOptionValue(batchSizeOpt.getLongOpt())).or("1000"));
+		final double bandwidth = Double.parseDouble(Optional.fromNullable(cl.getOptionValue(bandwidthOpt.getLongOpt())).or("1"));
+		final List<MutationCompression> compressions = getCompressions(cl);
+
+		Iterator<List<Mutation>> batched = Iterators.partition(Scans.toMutationIterator(scanner.iterator()), batchSize);
+		Iterator<List<CompressionStatistics>> evaluated = Iterators.transform(batched,
+				new Function<List<Mutation>, List<CompressionStatistics>>() {
+					public List<CompressionStatistics> apply(List<Mutation> batch) {
+						List<CompressionStatistics> stats = new ArrayList<CompressionStatistics>();
+						for (MutationCompression compression : compressions) {
+							stats.add(compression.evaluate(batch));
+						}
+						return stats;
+					}
+				});
+
+		if (cl.hasOption(summaryOpt.getLongOpt())) {
+			shellState.printLines(CompressionSummary.report("Mutation", evaluated, bandwidth).iterator(), true);
+		} else {
+			Iterator<String> stats = Iterators.transform(evaluated, new Function<List<CompressionStatistics>, String>() {
+				public String apply(List<CompressionStatistics> batch) {
+					StringBuilder sb = new StringBuilder();
+					sb.append("============ Mutation compression stats ==============").append('\n');
+					for (CompressionStatistics stats : batch) {
+						sb.append(stats.toString(bandwidth)).append('\n');
+					}
+					sb.append("=======================================================").append("\n\n");
+					return sb.toString();
+				}
+			});
+			shellState.printLines(stats, true);
+		}
+		return 0;
+	}
+
+	private List<MutationCompression> getCompressions(CommandLine cl) {
+		List<MutationCompression> compressions = new ArrayList<MutationCompression>();
+		compressions.add(new ThriftMutationCompression(IdentityCodec.INSTANCE));
+		compressions.add(new ThriftMutationCompression(DeflateCodec.DEFAULT));
+		compressions.add(new RelativeMutationCompression(IdentityCodec.INSTANCE));
+		compressions.add(new RelativeMutationCompression(DeflateCodec.DEFAULT));
+		if (cl.hasOption(codecsOpt.getLongOpt())) {
+			for (Codec codec : Codecs.forNames(cl.getOptionValue(codecsOpt.getLongOpt()))) {
+				compressions.add(new ThriftMutationCompression(codec));
+				compressions.add(new RelativeMutationCompression(codec));
+			}
+		}
+		return compressions;
+	}
+
+	@Override
+	public String description() {
+		return "prints information about transport compression of the mutations that would write a scan";
+	}
+
+	@Override
+	public int numArgs() {
+		return 0;
+	}
+
+}
@@ -21,7 +21,8 @@ import org.apache.accumulo.shell.ShellExtension;
 /**
  * A shell extension that supplies commands for evaluating various
  * transport compression algorithms for sending data from tablet
- * servers to clients during scans (primarily sequential scans). 
+ * servers to clients during scans (primarily sequential scans) and from
+ * clients to tablet servers during ingest.
  */
 public class ScanCompressionAnalyzerShellExtension extends ShellExtension {
 
@@ -32,7 +33,8 @@ public class ScanCompressionAnalyzerShellExtension extends ShellExtension {
 
 	@Override
 	public Command[] getCommands() {
-		return new Command[] { new ScanCompressionCommand() };
+		return new Command[] { new ScanCompressionCommand(), new TrainDictionaryCommand(), new MutationCompressionCommand(),
+				new FieldBreakdownCommand() };
 	}
 
 }
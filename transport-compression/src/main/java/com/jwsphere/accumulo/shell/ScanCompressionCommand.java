@@ -15,9 +15,15 @@
  */
 package com.jwsphere.accumulo.shell;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.accumulo.core.client.Scanner;
@@ -35,12 +41,17 @@ import org.apache.commons.cli.Options;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterators;
-import com.jwsphere.accumulo.DefaultTransportCompression;
-import com.jwsphere.accumulo.DeflateTransportCompression;
-import com.jwsphere.accumulo.DeflatedRelativeKeyTransportCompression;
-import com.jwsphere.accumulo.RelativeKeyTransportCompression;
+import com.jwsphere.accumulo.BatchBudget;
+import com.jwsphere.accumulo.CompressionSession;
+import com.jwsphere.accumulo.CompressionStatistics;
+import com.jwsphere.accumulo.CompressionSummary;
+import com.jwsphere.accumulo.Encodings;
+import com.jwsphere.accumulo.PipelinedEvaluator;
+import com.jwsphere.accumulo.ScanCorpusWriter;
 import com.jwsphere.accumulo.Scans;
 import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.Codecs;
 
 /**
  * <p>
@@ -51,24 +62,53 @@ import com.jwsphere.accumulo.TransportCompression;
  *   Deflated - deflates an encoded {@code ScanResult} thrift object. <br>
  *   RelativeKey - run-length encoding per-byte <br>
  *   DeflatedRelativeKey - deflates the run-length-encoded data <br>
+ *   Columnar - transposes each batch into per-field columns <br>
+ *   DeflatedColumnar - deflates the columnar data <br>
+ *   Columnar[..,delta] - columnar data with delta encoded timestamps and a delete bitmap <br>
+ *   Columnar[..,delta,dict] - additionally replaces column families and visibilities with dictionary ids <br>
+ *   Adaptive - chooses the cheapest columnar codec for each batch from a sample <br>
+ *   Framed - checksummed, independently compressed columnar blocks with a first-key index <br>
  *   
  * </p>
  * 
  * <p>
- * Arguments are the same as the scan command with the single addition
- * of an argument to control the batch size.
+ * Arguments are the same as the scan command with the addition of
+ * arguments to control the batch size in entries, estimated bytes and target
+ * compressed bytes and an argument listing additional
+ * byte-level codecs (see {@link Codecs}) to evaluate with each encoding.
+ * With {@code --session} each encoding is also evaluated as a
+ * {@link CompressionSession} spanning the whole scan.  Each encoding is timed,
+ * and {@code --bandwidth} sets the link speed in Gbps used to estimate whether
+ * compression reduces the end-to-end transfer time.  With {@code --summary}
+ * only the totals of the whole scan are printed, followed by the algorithms
+ * ranked by effective transfer time.  Batches are evaluated on {@code --threads}
+ * threads while the scan continues, and {@code --sample-every} or
+ * {@code --sample-fraction} restrict the evaluation to a sample of the batches.
+ * With {@code --capture} the batches are written to a local corpus file
+ * instead, which {@link com.jwsphere.accumulo.tools.ReplayCorpus} evaluates
+ * without a cluster.
  * </p>
  * 
  * <h3>
  * Usage Example:
  * </h3>
  * <p>
- * {@code TransportCompressionAnalyzer::scancompression -t my_table --batch-size 10000 }
+ * {@code TransportCompressionAnalyzer::scancompression -t my_table --batch-size 10000 --codecs lz,deflate-fast }
  * <p>
  */
 public class ScanCompressionCommand extends ScanCommand {
 
 	private Option batchSizeOpt;
+	private Option batchBytesOpt;
+	private Option batchCompressedBytesOpt;
+	private Option codecsOpt;
+	private Option sessionOpt;
+	private Option bandwidthOpt;
+	private Option summaryOpt;
+	private Option sampleEveryOpt;
+	private Option sampleFractionOpt;
+	private Option threadsOpt;
+	private Option captureOpt;
 
 	@Override
 	public Options getOptions() {
@@ -76,8 +116,62 @@ public class ScanCompressionCommand extends ScanCommand {
 		batchSizeOpt.setRequired(false);
 		batchSizeOpt.setArgName("int");
 
+		batchBytesOpt = new Option(null, "batch-bytes", true, "also cap each batch by its estimated uncompressed size in bytes");
+		batchBytesOpt.setRequired(false);
+		batchBytesOpt.setArgName("bytes");
+
+		batchCompressedBytesOpt = new Option(null, "batch-compressed-bytes", true, "also target a compressed size in "
+				+ "bytes for each batch, following the ratio of the best encoding of the previous batches");
+		batchCompressedBytesOpt.setRequired(false);
+		batchCompressedBytesOpt.setArgName("bytes");
+
+		codecsOpt = new Option(null, "codecs", true, "comma separated byte-level codecs to evaluate in addition to "
+				+ "the defaults, e.g. deflate-fast,deflate-huffman,lz,rfile:snappy");
+		codecsOpt.setRequired(false);
+		codecsOpt.setArgName("codecs");
+
+		sessionOpt = new Option(null, "session", false, "also evaluate each encoding with state carried across "
+				+ "the batches of the scan");
+		sessionOpt.setRequired(false);
+
+		bandwidthOpt = new Option(null, "bandwidth", true, "link bandwidth in gigabits per second used to "
+				+ "estimate the effective transfer time, defaults to 1");
+		bandwidthOpt.setRequired(false);
+		bandwidthOpt.setArgName("gbps");
+
+		summaryOpt = new Option(null, "summary", false, "print totals, percentiles and a ranking for the whole scan "
+				+ "instead of statistics for every batch");
+		summaryOpt.setRequired(false);
+
+		sampleEveryOpt = new Option(null, "sample-every", true, "evaluate only every nth batch of the scan");
+		sampleEveryOpt.setRequired(false);
+		sampleEveryOpt.setArgName("int");
+
+		sampleFractionOpt = new Option(null, "sample-fraction", true, "evaluate a random fraction of the batches of the scan");
+		sampleFractionOpt.setRequired(false);
+		sampleFractionOpt.setArgName("fraction");
+
+		threadsOpt = new Option(null, "threads", true, "number of threads evaluating batches, defaults to the number of processors");
+		threadsOpt.setRequired(false);
+		threadsOpt.setArgName("int");
+
+		captureOpt = new Option(null, "capture", true, "write the (sampled) batches to a local corpus file for offline "
+				+ "replay instead of evaluating them");
+		captureOpt.setRequired(false);
+		captureOpt.setArgName("file");
+
 		Options o = super.getOptions();
 		o.addOption(batchSizeOpt);
+		o.addOption(batchBytesOpt);
+		o.addOption(batchCompressedBytesOpt);
+		o.addOption(codecsOpt);
+		o.addOption(sessionOpt);
+		o.addOption(bandwidthOpt);
+		o.addOption(summaryOpt);
+		o.addOption(sampleEveryOpt);
+		o.addOption(sampleFractionOpt);
+		o.addOption(threadsOpt);
+		o.addOption(captureOpt);
 		return o;
 	}
 
@@ -126,29 +220,130 @@ public class ScanCompressionCommand extends ScanCommand {
 		return Integer.parseInt(Optional.fromNullable(batchSize).or("1000"));
 	}
 
-	protected void printRecords(final CommandLine cl, Shell shellState, final Scanner scanner, PrintFile outFile) throws IOException {
+	private BatchBudget getBudget(CommandLine cl) {
+		BatchBudget budget = BatchBudget.entries(getBatchSize(cl));
+		if (cl.hasOption(batchBytesOpt.getLongOpt())) {
+			budget = budget.withMaxBytes(Long.parseLong(cl.getOptionValue(batchBytesOpt.getLongOpt())));
+		}
+		if (cl.hasOption(batchCompressedBytesOpt.getLongOpt())) {
+			budget = budget.withCompressedBytes(Long.parseLong(cl.getOptionValue(batchCompressedBytesOpt.getLongOpt())));
+		}
+		return budget;
+	}
 
-		Iterator<List<KeyValue>> batched = Scans.toBatchIterator(scanner.iterator(), scanner.getBatchSize());
-
-		final TransportCompression defaultCompression = new DefaultTransportCompression();
-		final TransportCompression deflateCompression = new DeflateTransportCompression();
-		final TransportCompression relativeKeyCompression = new RelativeKeyTransportCompression();
-		final TransportCompression deflatedRelativeKeyCompression = new DeflatedRelativeKeyTransportCompression();
-
-		Iterator<String> stats = Iterators.transform(batched, new Function<List<KeyValue>, String>() {
-			public String apply(List<KeyValue> batch) {
-				StringBuilder sb = new StringBuilder();
-				sb.append("============ ScanResult compression stats =============").append('\n');
-				sb.append(defaultCompression.evaluate(batch).toString()).append('\n');
-				sb.append(deflateCompression.evaluate(batch).toString()).append('\n');
-				sb.append(relativeKeyCompression.evaluate(batch).toString()).append('\n');
-				sb.append(deflatedRelativeKeyCompression.evaluate(batch));
-				sb.append("=======================================================").append("\n\n");
-				return sb.toString();
+	/**
+	 * Reports the best compression ratio of each evaluated batch to the
+	 * budget.  Since batches are evaluated while the scan continues, the
+	 * budget follows the ratio a few batches behind.
+	 */
+	private static Iterator<List<CompressionStatistics>> observe(Iterator<List<CompressionStatistics>> evaluated,
+			final BatchBudget budget) {
+		return Iterators.transform(evaluated, new Function<List<CompressionStatistics>, List<CompressionStatistics>>() {
+			public List<CompressionStatistics> apply(List<CompressionStatistics> batch) {
+				CompressionStatistics best = null;
+				for (CompressionStatistics stats : batch) {
+					if (stats.getCompressedSize() > 0
+							&& (best == null || stats.getCompressionRatio() > best.getCompressionRatio())) {
+						best = stats;
+					}
+				}
+				if (best != null) {
+					budget.observe(best);
+				}
+				return batch;
 			}
 		});
+	}
+
+	private int getThreads(CommandLine cl) {
+		String threads = cl.getOptionValue(threadsOpt.getLongOpt());
+		return Integer.parseInt(Optional.fromNullable(threads).or(String.valueOf(Runtime.getRuntime().availableProcessors())));
+	}
 
-		shellState.printLines(stats, true);
+	private Iterator<List<KeyValue>> sample(CommandLine cl, Iterator<List<KeyValue>> batched) {
+		if (cl.hasOption(sampleEveryOpt.getLongOpt())) {
+			batched = Scans.sampleEvery(batched, Integer.parseInt(cl.getOptionValue(sampleEveryOpt.getLongOpt())));
+		}
+		if (cl.hasOption(sampleFractionOpt.getLongOpt())) {
+			double fraction = Double.parseDouble(cl.getOptionValue(sampleFractionOpt.getLongOpt()));
+			batched = Scans.sampleFraction(batched, fraction, new Random());
+		}
+		return batched;
+	}
+
+	private double getBandwidth(CommandLine cl) {
+		String bandwidth = cl.getOptionValue(bandwidthOpt.getLongOpt());
+		return Double.parseDouble(Optional.fromNullable(bandwidth).or("1"));
+	}
+
+	private static void capture(Shell shellState, Iterator<List<KeyValue>> batched, File file) throws IOException {
+		ScanCorpusWriter writer = new ScanCorpusWriter(file);
+		try {
+			while (batched.hasNext()) {
+				writer.write(batched.next());
+			}
+		} finally {
+			writer.close();
+		}
+		shellState.getReader().println("Captured " + writer.getEntries() + " entries in " + writer.getBatches()
+				+ " batches to " + file.getAbsolutePath());
+	}
+
+	private List<TransportCompression> getCompressions(CommandLine cl) {
+		List<Codec> codecs = Collections.emptyList();
+		if (cl.hasOption(codecsOpt.getLongOpt())) {
+			codecs = Codecs.forNames(cl.getOptionValue(codecsOpt.getLongOpt()));
+		}
+		return Encodings.standard(getBandwidth(cl), codecs);
+	}
+
+	protected void printRecords(final CommandLine cl, Shell shellState, final Scanner scanner, PrintFile outFile) throws IOException {
+
+		BatchBudget budget = getBudget(cl);
+		Iterator<List<KeyValue>> batched = sample(cl, Scans.toBatchIterator(scanner.iterator(), budget));
+		if (cl.hasOption(captureOpt.getLongOpt())) {
+			capture(shellState, batched, new File(cl.getOptionValue(captureOpt.getLongOpt())));
+			return;
+		}
+
+		final List<TransportCompression> compressions = getCompressions(cl);
+		final double bandwidth = getBandwidth(cl);
+		final List<CompressionSession> sessions = new ArrayList<CompressionSession>();
+		if (cl.hasOption(sessionOpt.getLongOpt())) {
+			for (TransportCompression compression : compressions) {
+				sessions.add(compression.newSession());
+			}
+		}
+
+		// evaluation runs on the pool while the shell thread reads the next batches
+		int threads = getThreads(cl);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		PipelinedEvaluator evaluator = new PipelinedEvaluator(compressions, sessions, executor, Math.max(2, threads));
+		Iterator<List<CompressionStatistics>> evaluated = observe(evaluator.evaluate(batched), budget);
+
+		try {
+			if (cl.hasOption(summaryOpt.getLongOpt())) {
+				shellState.printLines(CompressionSummary.report("Scan", evaluated, bandwidth).iterator(), true);
+			} else {
+				Iterator<String> stats = Iterators.transform(evaluated, new Function<List<CompressionStatistics>, String>() {
+					public String apply(List<CompressionStatistics> batch) {
+						StringBuilder sb = new StringBuilder();
+						sb.append("============ ScanResult compression stats =============").append('\n');
+						for (CompressionStatistics stats : batch) {
+							sb.append(stats.toString(bandwidth)).append('\n');
+						}
+						sb.append("=======================================================").append("\n\n");
+						return sb.toString();
+					}
+				});
+				shellState.printLines(stats, true);
+			}
+		} finally {
+			executor.shutdownNow();
+			for (CompressionSession session : sessions) {
+				session.close();
+			}
+		}
 	}
 
 	@Override
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.shell;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.interpret.ScanInterpreter;
+import org.apache.accumulo.shell.Shell;
+import org.apache.accumulo.shell.commands.OptUtil;
+import org.apache.accumulo.shell.commands.ScanCommand;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import com.jwsphere.accumulo.DictionaryTrainer;
+import com.jwsphere.accumulo.Encodings;
+import com.jwsphere.accumulo.Scans;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.codec.Codecs;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+
+/**
+ * <p>
+ * A command that trains a preset deflate dictionary by sampling batches from
+ * a scan and writes it to a local file.  The dictionary is trained on the
+ * uncompressed form of one of the encodings : <br>
+ *
+ *   relativekey - the relative key encoding (default) <br>
+ *   columnar - the columnar encoding <br>
+ *   columnar-dict - the columnar encoding with delta timestamps and dictionaries <br>
+ *   thrift - the compact thrift encoding of a {@code ScanResult} <br>
+ *
+ * </p>
+ *
+ * <p>
+ * Arguments are the same as the scan command with the addition of arguments
+ * controlling the batch size, the number of batches sampled, the dictionary
+ * size and the output file.  The resulting file can be evaluated with
+ * {@code scancompression --codecs dict:<file>}.
+ * </p>
+ *
+ * <h3>
+ * Usage Example:
+ * </h3>
+ * <p>
+ * {@code TransportCompressionAnalyzer::traindictionary -t my_table --batch-size 100 --dictionary-file /tmp/my_table.dict }
+ * <p>
+ */
+public class TrainDictionaryCommand extends ScanCommand {
+
+	private Option batchSizeOpt;
+	private Option samplesOpt;
+	private Option dictionarySizeOpt;
+	private Option dictionaryFileOpt;
+	private Option encodingOpt;
+
+	@Override
+	public Options getOptions() {
+		batchSizeOpt = new Option(null, "batch-size", true, "scanner batch size");
+		batchSizeOpt.setRequired(false);
+		batchSizeOpt.setArgName("int");
+
+		samplesOpt = new Option(null, "samples", true, "maximum number of batches to sample");
+		samplesOpt.setRequired(false);
+		samplesOpt.setArgName("int");
+
+		dictionarySizeOpt = new Option(null, "dictionary-size", true, "maximum dictionary size in bytes, at most "
+				+ DeflateCodec.MAX_DICTIONARY_SIZE);
+		dictionarySizeOpt.setRequired(false);
+		dictionarySizeOpt.setArgName("int");
+
+		dictionaryFileOpt = new Option(null, "dictionary-file", true, "local file the dictionary is written to");
+		dictionaryFileOpt.setRequired(true);
+		dictionaryFileOpt.setArgName("file");
+
+		encodingOpt = new Option(null, "encoding", true, "encoding to train on: relativekey, columnar, columnar-dict or thrift");
+		encodingOpt.setRequired(false);
+		encodingOpt.setArgName("encoding");
+
+		Options o = super.getOptions();
+		o.addOption(batchSizeOpt);
+		o.addOption(samplesOpt);
+		o.addOption(dictionarySizeOpt);
+		o.addOption(dictionaryFileOpt);
+		o.addOption(encodingOpt);
+		return o;
+	}
+
+	@Override
+	public int execute(final String fullCommand, final CommandLine cl, final Shell shellState) throws Exception {
+		final String tableName = OptUtil.getTableOpt(cl, shellState);
+
+		final ScanInterpreter interpeter = getInterpreter(cl, tableName, shellState);
+
+		// handle first argument, if present, the authorizations list to
+		// scan with
+		final Authorizations auths = getAuths(cl, shellState);
+		final Scanner scanner = shellState.getConnector().createScanner(tableName, auths);
+
+		// handle session-specific scan iterators
+		addScanIterators(shellState, cl, scanner, tableName);
+
+		// handle remaining optional arguments
+		scanner.setRange(getRange(cl, interpeter));
+
+		// handle columns
+		fetchColumns(cl, scanner, interpeter);
+
+		// set timeout
+		scanner.setTimeout(getTimeout(cl), TimeUnit.MILLISECONDS);
+		scanner.setBatchSize(getIntOption(cl, batchSizeOpt, "1000"));
+
+		int maxSamples = getIntOption(cl, samplesOpt, "1000");
+		int dictionarySize = getIntOption(cl, dictionarySizeOpt, String.valueOf(DeflateCodec.MAX_DICTIONARY_SIZE));
+		DictionaryTrainer trainer = new DictionaryTrainer(getEncoding(cl), dictionarySize);
+
+		Iterator<List<KeyValue>> batched = Scans.toBatchIterator(scanner.iterator(), scanner.getBatchSize());
+		while (batched.hasNext() && trainer.getSampleCount() < maxSamples) {
+			if (!trainer.addSample(batched.next())) {
+				break;
+			}
+		}
+
+		byte[] dictionary = trainer.train();
+		File file = new File(cl.getOptionValue(dictionaryFileOpt.getLongOpt()));
+		Files.write(dictionary, file);
+
+		shellState.getReader().println("Trained a " + dictionary.length + " byte dictionary from " + trainer.getSampleCount()
+				+ " batches (" + trainer.getSampleBytes() + " bytes), evaluate it with --codecs "
+				+ Codecs.DICTIONARY_PREFIX + file.getAbsolutePath());
+		return 0;
+	}
+
+	private TransportCompression getEncoding(CommandLine cl) {
+		String encoding = Optional.fromNullable(cl.getOptionValue(encodingOpt.getLongOpt())).or("relativekey");
+		return Encodings.forName(encoding, IdentityCodec.INSTANCE);
+	}
+
+	private static int getIntOption(CommandLine cl, Option option, String defaultValue) {
+		return Integer.parseInt(Optional.fromNullable(cl.getOptionValue(option.getLongOpt())).or(defaultValue));
+	}
+
+	@Override
+	public String description() {
+		return "trains a preset deflate dictionary from sampled scan batches and writes it to a local file";
+	}
+
+	@Override
+	public int numArgs() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2015 Jonathan Wonders
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jwsphere.accumulo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.accumulo.core.data.KeyValue;
+
+import com.google.common.collect.AbstractIterator;
+import com.jwsphere.accumulo.CompressionSession;
+import com.jwsphere.accumulo.CompressionStatistics;
+import com.jwsphere.accumulo.CompressionSummary;
+import com.jwsphere.accumulo.Encodings;
+import com.jwsphere.accumulo.PipelinedEvaluator;
+import com.jwsphere.accumulo.ScanCorpusReader;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.Codecs;
+
+/**
+ * <p>
+ * Evaluates the encodings of {@code scancompression} on corpus files captured
+ * with {@code scancompression --capture}, without a cluster, and prints the
+ * summary and ranking of {@code scancompression --summary}.  Batches are
+ * evaluated on a pool of threads while the files are read.
+ * </p>
+ *
+ * <h3>
+ * Usage Example:
+ * </h3>
+ * <p>
+ * {@code java -cp <jar and accumulo client jars> com.jwsphere.accumulo.tools.ReplayCorpus --threads 8 --codecs lz my_table.corpus }
+ * </p>
+ */
+public class ReplayCorpus {
+
+	private static final String USAGE = "usage: ReplayCorpus [--threads n] [--bandwidth gbps] [--codecs names] "
+			+ "[--session] file...";
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private double bandwidth = 1;
+	private List<Codec> codecs = Collections.emptyList();
+	private boolean session = false;
+	private final List<File> files = new ArrayList<File>();
+
+	public static void main(String[] args) throws IOException {
+		ReplayCorpus replay = new ReplayCorpus();
+		try {
+			replay.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		for (String line : replay.run()) {
+			System.out.println(line);
+		}
+	}
+
+	void parse(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			String arg = args[i];
+			if (arg.equals("--threads")) {
+				threads = Integer.parseInt(value(args, ++i));
+			} else if (arg.equals("--bandwidth")) {
+				bandwidth = Double.parseDouble(value(args, ++i));
+			} else if (arg.equals("--codecs")) {
+				codecs = Codecs.forNames(value(args, ++i));
+			} else if (arg.equals("--session")) {
+				session = true;
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			} else {
+				files.add(new File(arg));
+			}
+		}
+		if (files.isEmpty()) {
+			throw new IllegalArgumentException("No corpus files given.");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required.");
+		}
+	}
+
+	private static String value(String[] args, int i) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+		}
+		return args[i];
+	}
+
+	/**
+	 * Evaluates every batch of the files in order and returns the summary.
+	 */
+	List<String> run() {
+		List<TransportCompression> compressions = Encodings.standard(bandwidth, codecs);
+		List<CompressionSession> sessions = new ArrayList<CompressionSession>();
+		if (session) {
+			for (TransportCompression compression : compressions) {
+				sessions.add(compression.newSession());
+			}
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			PipelinedEvaluator evaluator = new PipelinedEvaluator(compressions, sessions, executor, Math.max(2, threads));
+			Iterator<List<CompressionStatistics>> evaluated = evaluator.evaluate(batches(files));
+			return CompressionSummary.report("Replay", evaluated, bandwidth);
+		} finally {
+			executor.shutdownNow();
+			for (CompressionSession s : sessions) {
+				s.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the batches of each file in turn, closing a file once it is
+	 * exhausted.
+	 */
+	private static Iterator<List<KeyValue>> batches(final List<File> files) {
+		return new AbstractIterator<List<KeyValue>>() {
+
+			private final Iterator<File> remaining = files.iterator();
+			private ScanCorpusReader reader;
+
+			@Override
+			protected List<KeyValue> computeNext() {
+				try {
+					while (reader == null || !reader.hasNext()) {
+						if (reader != null) {
+							reader.close();
+							reader = null;
+						}
+						if (!remaining.hasNext()) {
+							return endOfData();
+						}
+						reader = new ScanCorpusReader(remaining.next());
+					}
+					return reader.next();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.AdaptiveTransportCompression.Objective;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+public class AdaptiveTransportCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		TransportCompressionTest.roundtrip(new AdaptiveTransportCompression(Objective.bytes()));
+		TransportCompressionTest.roundtrip(new AdaptiveTransportCompression(Objective.latency(1)));
+	}
+
+	@Test
+	public void choosesSmallestCandidate() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 200; ++i) {
+			entries.add(new KeyValue(new Key("row" + i, "family", "qualifier", "A&B&C", i), new Value(new byte[100])));
+		}
+		for (Objective objective : new Objective[] { Objective.bytes(), Objective.latency(0.000001) }) {
+			AdaptiveTransportCompression compression = new AdaptiveTransportCompression(objective, Arrays.asList(
+					new ColumnarTransportCompression(), new ColumnarTransportCompression(DeflateCodec.DEFAULT)), 16);
+			assertEquals(entries, compression.decompress(compression.compress(entries)));
+			assertArrayEquals(new long[] { 0, 1 }, compression.getSelections());
+		}
+	}
+
+	@Test
+	public void candidateIgnoringBuffer() {
+		TransportCompression ignoresBuffer = new ColumnarTransportCompression() {
+			@Override
+			public List<TKeyValue> compress(List<? extends KeyValue> source, ByteBufferOutputStream buffer) {
+				return super.compress(source, new ByteBufferOutputStream());
+			}
+		};
+		AdaptiveTransportCompression compression = new AdaptiveTransportCompression(Objective.bytes(),
+				Collections.singletonList(ignoresBuffer), 16);
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 20; ++i) {
+			entries.add(TransportCompressionTest.generate());
+		}
+		assertEquals(entries, compression.decompress(compression.compress(entries)));
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.Codec;
+import com.jwsphere.accumulo.codec.Codecs;
+import com.jwsphere.accumulo.io.ByteBufferOutputStream;
+
+public class CodecTransportCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		for (Codec codec : Codecs.builtIn()) {
+			TransportCompressionTest.roundtrip(new CodecTransportCompression(codec));
+			TransportCompressionTest.roundtrip(new RelativeKeyTransportCompression(codec));
+			TransportCompressionTest.roundtrip(new ColumnarTransportCompression(codec));
+		}
+	}
+
+	@Test
+	public void roundtripDirectBuffer() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 20; ++i) {
+			entries.add(TransportCompressionTest.generate());
+		}
+		ByteBufferOutputStream buffer = new ByteBufferOutputStream(16, true);
+		for (Codec codec : Codecs.builtIn()) {
+			for (TransportCompression compression : new TransportCompression[] { new CodecTransportCompression(codec),
+					new RelativeKeyTransportCompression(codec), new ColumnarTransportCompression(codec) }) {
+				buffer.reset();
+				assertEquals(entries, compression.decompress(compression.compress(entries, buffer)));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.ColumnarTransportCompression.Feature;
+import com.jwsphere.accumulo.CompressionStatistics.FieldStatistics;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+import com.jwsphere.accumulo.codec.LzCodec;
+
+public class ColumnarTransportCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		TransportCompressionTest.roundtrip(new ColumnarTransportCompression());
+	}
+
+	@Test
+	public void slab() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 20; ++i) {
+			entries.add(TransportCompressionTest.generate());
+		}
+		for (ColumnarTransportCompression compression : new ColumnarTransportCompression[] {
+				new ColumnarTransportCompression(), new ColumnarTransportCompression(LzCodec.DEFAULT) }) {
+			SlabBatch batch = compression.decompressSlab(compression.compress(entries));
+			assertEquals(entries.size(), batch.size());
+			for (SlabBatch.Entry entry : batch) {
+				KeyValue expected = entries.get(entry.getIndex());
+				assertEquals(expected.getKey().getRowData(), entry.getRowData());
+				assertEquals(new ArrayByteSequence(expected.getValue().get()), entry.getValueData());
+				assertEquals(expected, entry.getKeyValue());
+			}
+		}
+	}
+
+	@Test
+	public void deltaEncoded() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 20; ++i) {
+			Key key = new Key("row" + i, "family", "qualifier", "A&B&C", now + (i % 2 == 0 ? i : -i));
+			key.setDeleted(i % 3 == 0);
+			entries.add(new KeyValue(key, new Value(new byte[i])));
+		}
+		ColumnarTransportCompression compression = new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DELTA_TIMESTAMPS);
+		TransportCompressionTest.roundtrip(compression);
+		assertEquals(entries, compression.decompress(compression.compress(entries)));
+
+		List<FieldStatistics> fields = compression.evaluate(entries).getFields();
+		assertEquals("timestamp", fields.get(0).getField());
+		assertEquals(8 * entries.size(), fields.get(0).getBaseline());
+		assertTrue(fields.get(0).getEncoded() < fields.get(0).getBaseline());
+		assertEquals(3, fields.get(1).getEncoded());
+	}
+
+	@Test
+	public void dictionary() {
+		ColumnarTransportCompression compression = new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.DICTIONARY);
+		TransportCompressionTest.roundtrip(compression);
+
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 100; ++i) {
+			entries.add(new KeyValue(new Key("row" + i, "family" + (i % 3), "qualifier", i % 2 == 0 ? "A&B&C" : "A|B", i), new Value()));
+		}
+		assertEquals(entries, compression.decompress(compression.compress(entries)));
+		List<FieldStatistics> fields = compression.evaluate(entries).getFields();
+		assertEquals("family", fields.get(2).getField());
+		assertTrue(fields.get(2).getEncoded() < fields.get(2).getBaseline());
+		assertTrue(fields.get(3).getEncoded() < fields.get(3).getBaseline());
+	}
+
+	@Test
+	public void typedValues() {
+		ColumnarTransportCompression compression = new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.TYPED_VALUES);
+		TransportCompressionTest.roundtrip(compression);
+		TransportCompressionTest.roundtrip(new ColumnarTransportCompression(DeflateCodec.DEFAULT, Feature.TYPED_VALUES));
+
+		List<List<KeyValue>> batches = new ArrayList<List<KeyValue>>();
+		batches.add(withValues(new byte[0], new byte[0], new byte[0]));
+		batches.add(withValues(longValue(5), longValue(-3), longValue(Long.MAX_VALUE), longValue(Long.MIN_VALUE)));
+		batches.add(withValues("0".getBytes(), "-12".getBytes(), "123456789012345678".getBytes(), "7".getBytes()));
+		batches.add(withValues("1".getBytes(), "007".getBytes(), "-0".getBytes(), "-".getBytes()));
+		batches.add(withValues("a".getBytes(), "a".getBytes(), new byte[0], "a".getBytes(), "a".getBytes()));
+		batches.add(withValues("x".getBytes(), new byte[0], longValue(1), "12".getBytes()));
+		for (List<KeyValue> batch : batches) {
+			assertEquals(batch, compression.decompress(compression.compress(batch)));
+			SlabBatch slab = compression.decompressSlab(compression.compress(batch));
+			for (int i = 0; i < batch.size(); ++i) {
+				assertEquals(new ArrayByteSequence(batch.get(i).getValue().get()), slab.getValueData(i));
+				assertEquals(batch.get(i).getKey().getRowData(), slab.getRowData(i));
+			}
+		}
+	}
+
+	@Test
+	public void typedValuesAreSmaller() {
+		ColumnarTransportCompression compression = new ColumnarTransportCompression(IdentityCodec.INSTANCE, Feature.TYPED_VALUES);
+		List<KeyValue> counters = new ArrayList<KeyValue>();
+		List<KeyValue> decimals = new ArrayList<KeyValue>();
+		List<KeyValue> empty = new ArrayList<KeyValue>();
+		for (int i = 0; i < 100; ++i) {
+			Key key = new Key("row" + i, "family", "qualifier", "", i);
+			counters.add(new KeyValue(key, new Value(longValue(1000000 + i * 3))));
+			decimals.add(new KeyValue(key, new Value(Long.toString(1000000 + i * 3).getBytes())));
+			empty.add(new KeyValue(key, new Value()));
+		}
+		assertTrue(valueStatistics(compression, counters).getEncoded() * 4 < valueStatistics(compression, counters).getBaseline());
+		assertTrue(valueStatistics(compression, decimals).getEncoded() * 4 < valueStatistics(compression, decimals).getBaseline());
+		assertEquals(1, valueStatistics(compression, empty).getEncoded());
+	}
+
+	private static FieldStatistics valueStatistics(ColumnarTransportCompression compression, List<KeyValue> batch) {
+		FieldStatistics value = compression.evaluate(batch).getFields().get(2);
+		assertEquals("value", value.getField());
+		return value;
+	}
+
+	private static List<KeyValue> withValues(byte[]... values) {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < values.length; ++i) {
+			entries.add(new KeyValue(new Key("row" + i, "family", "qualifier", "", i), new Value(values[i])));
+		}
+		return entries;
+	}
+
+	private static byte[] longValue(long value) {
+		return ByteBuffer.allocate(8).putLong(value).array();
+	}
+
+}
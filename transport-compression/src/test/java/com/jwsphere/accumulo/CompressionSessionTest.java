@@ -0,0 +1,64 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+public class CompressionSessionTest {
+
+	@Test
+	public void roundtrip() {
+		roundtrip(new DefaultTransportCompression());
+		roundtrip(new ColumnarTransportCompression(DeflateCodec.DEFAULT));
+		roundtrip(new RelativeKeyTransportCompression(DeflateCodec.DEFAULT));
+		roundtrip(new CodecTransportCompression(DeflateCodec.DEFAULT));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void rejectsBatchesOutOfOrder() {
+		TransportCompression compression = new ColumnarTransportCompression(DeflateCodec.DEFAULT);
+		CompressionSession encoder = compression.newSession();
+		encoder.compress(batch());
+		List<TKeyValue> second = encoder.compress(batch());
+		compression.newSession().decompress(second);
+	}
+
+	@Test
+	public void evaluate() {
+		CompressionSession session = new ColumnarTransportCompression(DeflateCodec.DEFAULT).newSession();
+		for (int i = 0; i < 3; ++i) {
+			CompressionStatistics stats = session.evaluate(batch());
+			assertTrue(stats.isTimed());
+			assertTrue(stats.isRoundtripVerified());
+		}
+		session.close();
+	}
+
+	private static void roundtrip(TransportCompression compression) {
+		CompressionSession encoder = compression.newSession();
+		CompressionSession decoder = compression.newSession();
+		for (int i = 0; i < 3; ++i) {
+			List<KeyValue> entries = batch();
+			assertEquals(entries, decoder.decompress(encoder.compress(entries)));
+		}
+		encoder.close();
+		decoder.close();
+	}
+
+	private static List<KeyValue> batch() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 20; ++i) {
+			entries.add(TransportCompressionTest.generate());
+		}
+		return entries;
+	}
+
+}
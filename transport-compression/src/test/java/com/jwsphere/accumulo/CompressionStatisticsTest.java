@@ -0,0 +1,38 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.junit.Test;
+
+public class CompressionStatisticsTest {
+
+	@Test
+	public void transferTime() {
+		CompressionStatistics stats = new CompressionStatistics("test", 2000000, 500000, 100)
+				.withTiming(1000000, 500000, 0, true);
+		assertEquals(2000.0, stats.getEncodeThroughput(), 1e-9);
+		assertEquals(4000.0, stats.getDecodeThroughput(), 1e-9);
+		assertEquals(16000000.0, stats.getUncompressedTransferNanos(1), 1e-9);
+		assertEquals(1000000 + 4000000 + 500000, stats.getEffectiveTransferNanos(1), 1e-9);
+		assertTrue(stats.getTransferSpeedup(1) > 1);
+		assertTrue(stats.getTransferSpeedup(100) < 1);
+	}
+
+	@Test
+	public void evaluateIsTimedAndVerified() {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < 20; ++i) {
+			entries.add(TransportCompressionTest.generate());
+		}
+		CompressionStatistics stats = new ColumnarTransportCompression().evaluate(entries);
+		assertTrue(stats.isTimed());
+		assertTrue(stats.isRoundtripVerified());
+		assertEquals(2, stats.getFields().size());
+	}
+
+}
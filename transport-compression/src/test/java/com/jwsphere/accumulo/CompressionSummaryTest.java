@@ -0,0 +1,65 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CompressionSummaryTest {
+
+	@Test
+	public void percentiles() {
+		CompressionSummary summary = new CompressionSummary("test");
+		for (int i = 1; i <= 100; ++i) {
+			summary.add(new CompressionStatistics("test", 100 * i, 100, 10).withTiming(i * 1000, 0, 0, true));
+		}
+		assertEquals(100, summary.getBatches());
+		assertEquals(1000, summary.getEntries());
+		assertEquals(50.5, summary.getCompressionRatio(), 1e-9);
+		assertEquals(50.0, summary.getRatioPercentile(50), 1e-9);
+		assertEquals(95.0, summary.getRatioPercentile(95), 1e-9);
+		assertEquals(99000.0, summary.getEncodeNanosPercentile(99), 1e-9);
+	}
+
+	@Test
+	public void skipsUntimedBatches() {
+		CompressionSummary summary = new CompressionSummary("test");
+		for (int i = 1; i <= 10; ++i) {
+			summary.add(new CompressionStatistics("test", 100, 100, 10).withTiming(i * 1000, 0, 0, true));
+			summary.add(new CompressionStatistics("test", 100, 100, 10));
+		}
+		assertEquals(20, summary.getBatches());
+		assertEquals(1000.0, summary.getEncodeNanosPercentile(1), 1e-9);
+		assertEquals(5000.0, summary.getEncodeNanosPercentile(50), 1e-9);
+	}
+
+	@Test
+	public void samplesManyBatches() {
+		CompressionSummary summary = new CompressionSummary("test");
+		for (int i = 1; i <= 200000; ++i) {
+			summary.add(new CompressionStatistics("test", i, 1, 10));
+		}
+		assertEquals(200000, summary.getBatches());
+		assertEquals(100000, summary.getRatioPercentile(50), 10000);
+		assertEquals(190000, summary.getRatioPercentile(95), 10000);
+	}
+
+	@Test
+	public void rank() {
+		CompressionSummary fast = new CompressionSummary("fast");
+		fast.add(new CompressionStatistics("fast", 1000, 500, 10).withTiming(100, 100, 0, true));
+		CompressionSummary slow = new CompressionSummary("slow");
+		slow.add(new CompressionStatistics("slow", 1000, 100, 10).withTiming(100000, 100000, 0, true));
+		CompressionSummary broken = new CompressionSummary("broken");
+		broken.add(new CompressionStatistics("broken", 1000, 1, 10).withTiming(1, 1, 0, false));
+		CompressionSummary untimed = new CompressionSummary("untimed");
+		untimed.add(new CompressionStatistics("untimed", 1000, 1, 10));
+
+		List<CompressionSummary> ranked = CompressionSummary.rank(Arrays.asList(broken, untimed, slow, fast), 1);
+		assertEquals(Arrays.asList(fast, slow, untimed, broken), ranked);
+		assertEquals(Arrays.asList(slow, fast), CompressionSummary.rank(Arrays.asList(fast, slow), 0.001));
+	}
+
+}
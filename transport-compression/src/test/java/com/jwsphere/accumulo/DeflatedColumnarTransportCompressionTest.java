@@ -0,0 +1,12 @@
+package com.jwsphere.accumulo;
+
+import org.junit.Test;
+
+public class DeflatedColumnarTransportCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		TransportCompressionTest.roundtrip(new DeflatedColumnarTransportCompression());
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+public class DictionaryTrainerTest {
+
+	@Test
+	public void dictionaryImprovesSmallBatches() {
+		DictionaryTrainer trainer = new DictionaryTrainer(new ColumnarTransportCompression(), 4096);
+		for (int i = 0; i < 50; ++i) {
+			trainer.addSample(batch(i, 10));
+		}
+		byte[] dictionary = trainer.train();
+		assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+
+		List<KeyValue> batch = batch(1000, 10);
+		TransportCompression plain = new ColumnarTransportCompression(DeflateCodec.DEFAULT);
+		TransportCompression trained = new ColumnarTransportCompression(DeflateCodec.DEFAULT.withDictionary(dictionary));
+		assertEquals(batch, trained.decompress(trained.compress(batch)));
+		assertTrue(payloadSize(trained, batch) < payloadSize(plain, batch));
+	}
+
+	private static int payloadSize(TransportCompression compression, List<KeyValue> batch) {
+		return compression.compress(batch).get(0).bufferForValue().remaining();
+	}
+
+	private static List<KeyValue> batch(int start, int size) {
+		List<KeyValue> batch = new ArrayList<KeyValue>();
+		for (int i = start; i < start + size; ++i) {
+			Key key = new Key("tenant_0001/20150101/record_" + i, "attributes", "attribute_name_" + (i % 5),
+					"PUBLIC|(ADMIN&AUDIT)", 1420070400000L + i);
+			batch.add(new KeyValue(key, new Value(("measurement_value=" + i).getBytes())));
+		}
+		return batch;
+	}
+
+}
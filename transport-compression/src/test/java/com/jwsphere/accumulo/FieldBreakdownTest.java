@@ -0,0 +1,57 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.FieldBreakdown.Field;
+import com.jwsphere.accumulo.FieldBreakdown.FieldSummary;
+
+public class FieldBreakdownTest {
+
+	@Test
+	public void breakdown() {
+		List<KeyValue> batch = new ArrayList<KeyValue>();
+		for (int i = 0; i < 100; ++i) {
+			batch.add(new KeyValue(new Key(String.format("row_%05d", i), "family", "qualifier_" + i % 4, "A&B", 1000 + i),
+					new Value(new byte[] { (byte) i })));
+		}
+		FieldBreakdown breakdown = new FieldBreakdown();
+		breakdown.add(batch);
+		breakdown.add(batch);
+		assertEquals(200, breakdown.getEntries());
+
+		FieldSummary row = breakdown.getField(Field.ROW);
+		assertEquals(200 * 9, row.getRawBytes());
+		assertTrue(row.getRelativeBytes() < row.getRawBytes());
+		assertEquals(100, row.getDistinct());
+
+		FieldSummary family = breakdown.getField(Field.FAMILY);
+		assertEquals(1, family.getDistinct());
+		// every family after the first of a batch is written as two single byte lengths
+		assertEquals(2 * (2 + 6) + 198 * 2, family.getRelativeBytes());
+
+		FieldSummary qualifier = breakdown.getField(Field.QUALIFIER);
+		assertEquals(4, qualifier.getDistinct());
+
+		FieldSummary timestamp = breakdown.getField(Field.TIMESTAMP);
+		assertEquals(200 * 8, timestamp.getRawBytes());
+		assertEquals(2 * (2 + 99), timestamp.getRelativeBytes());
+
+		FieldSummary value = breakdown.getField(Field.VALUE);
+		assertEquals(100, value.getDistinct());
+		assertEquals(value.getRawBytes(), value.getRelativeBytes());
+		assertEquals(Math.log(100) / Math.log(2), value.getEntropy(), 1e-9);
+
+		assertTrue(breakdown.getField(Field.VISIBILITY).getEntropy() > 0);
+		assertEquals(2 + Field.values().length, breakdown.report().size());
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.data.thrift.TKey;
+import org.apache.accumulo.core.data.thrift.TKeyValue;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+public class FramedTransportCompressionTest {
+
+	private static final FramedTransportCompression FRAMED = new FramedTransportCompression(
+			new ColumnarTransportCompression(DeflateCodec.DEFAULT), 16);
+
+	@Test
+	public void roundtrip() {
+		TransportCompressionTest.roundtrip(FRAMED);
+		TransportCompressionTest.roundtrip(new FramedTransportCompression(new RelativeKeyTransportCompression(), 3));
+		assertEquals(Collections.emptyList(), FRAMED.decompress(FRAMED.compress(new ArrayList<KeyValue>())));
+	}
+
+	@Test
+	public void decompressFrom() {
+		List<KeyValue> entries = generate(100);
+		List<TKeyValue> compressed = FRAMED.compress(entries);
+		for (int i : new int[] { 0, 15, 16, 17, 50, 99 }) {
+			List<KeyValue> tail = Lists.newArrayList(FRAMED.decompressFrom(compressed, entries.get(i).getKey()));
+			assertEquals(entries.subList(i, entries.size()), tail);
+		}
+		Key past = entries.get(99).getKey().followingKey(PartialKey.ROW);
+		assertEquals(0, Lists.newArrayList(FRAMED.decompressFrom(compressed, past)).size());
+	}
+
+	@Test
+	public void decompressInParallel() {
+		List<KeyValue> entries = generate(100);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			assertEquals(entries, FRAMED.decompress(FRAMED.compress(entries), executor));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void detectsCorruption() {
+		List<KeyValue> entries = generate(20);
+		ByteBuffer value = FRAMED.compress(entries).get(0).bufferForValue();
+		byte[] bytes = new byte[value.remaining()];
+		value.duplicate().get(bytes);
+		bytes[bytes.length - 1] ^= 1;
+		try {
+			FRAMED.decompress(Collections.singletonList(new TKeyValue(new TKey(), ByteBuffer.wrap(bytes))));
+			fail("corruption not detected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void rejectsOtherEncoding() {
+		List<TKeyValue> compressed = FRAMED.compress(generate(20));
+		try {
+			new FramedTransportCompression(new ColumnarTransportCompression(), 16).decompress(compressed);
+			fail("encoding mismatch not detected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void detectsIndexCorruption() {
+		List<KeyValue> entries = generate(100);
+		ByteBuffer value = FRAMED.compress(entries).get(0).bufferForValue();
+		byte[] bytes = new byte[value.remaining()];
+		value.duplicate().get(bytes);
+		// a byte within the first key of the index, after the version, encoding and block count
+		int index = 1 + 2 + new ColumnarTransportCompression(DeflateCodec.DEFAULT).getName().length() + 1;
+		bytes[index + 6] ^= 1;
+		List<TKeyValue> corrupted = Collections.singletonList(new TKeyValue(new TKey(), ByteBuffer.wrap(bytes)));
+		try {
+			FRAMED.decompress(corrupted);
+			fail("index corruption not detected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			FRAMED.decompressFrom(corrupted, entries.get(50).getKey());
+			fail("index corruption not detected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static List<KeyValue> generate(int count) {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < count; ++i) {
+			entries.add(new KeyValue(new Key(String.format("row_%05d", i), "family", "qualifier", "A&B", i),
+					new Value(("value_" + i).getBytes())));
+		}
+		return entries;
+	}
+
+}
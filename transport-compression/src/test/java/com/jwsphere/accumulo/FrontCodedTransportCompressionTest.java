@@ -0,0 +1,88 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+import com.jwsphere.accumulo.codec.IdentityCodec;
+
+public class FrontCodedTransportCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		TransportCompressionTest.roundtrip(new FrontCodedTransportCompression());
+		TransportCompressionTest.roundtrip(new FrontCodedTransportCompression(DeflateCodec.DEFAULT, 7));
+		FrontCodedTransportCompression compression = new FrontCodedTransportCompression();
+		assertEquals(Collections.emptyList(), compression.decompress(compression.compress(new ArrayList<KeyValue>())));
+	}
+
+	@Test
+	public void roundtripHierarchicalRows() {
+		List<KeyValue> entries = hierarchical(200);
+		for (int interval : new int[] { 0, 1, 16, 200, 500 }) {
+			FrontCodedTransportCompression compression = new FrontCodedTransportCompression(IdentityCodec.INSTANCE, interval);
+			assertEquals(entries, compression.decompress(compression.compress(entries)));
+		}
+	}
+
+	@Test
+	public void decompressInParallel() {
+		List<KeyValue> entries = hierarchical(100);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (int interval : new int[] { 0, 16 }) {
+				FrontCodedTransportCompression compression = new FrontCodedTransportCompression(DeflateCodec.DEFAULT, interval);
+				assertEquals(entries, compression.decompress(compression.compress(entries), executor));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void sharesPrefixes() {
+		List<KeyValue> entries = hierarchical(200);
+		int frontCoded = size(new FrontCodedTransportCompression(), entries);
+		int restarted = size(new FrontCodedTransportCompression(IdentityCodec.INSTANCE, 10), entries);
+		assertTrue(frontCoded < restarted);
+		long raw = 0;
+		for (KeyValue entry : entries) {
+			raw += BatchBudget.sizeOf(entry);
+		}
+		assertTrue(restarted < raw);
+	}
+
+	@Test
+	public void smallerThanRelativeKey() {
+		List<KeyValue> entries = hierarchical(200);
+		assertTrue(size(new FrontCodedTransportCompression(), entries) < size(new RelativeKeyTransportCompression(), entries));
+	}
+
+	private static int size(TransportCompression compression, List<KeyValue> entries) {
+		return compression.compress(entries).get(0).bufferForValue().remaining();
+	}
+
+	private static List<KeyValue> hierarchical(int n) {
+		List<KeyValue> entries = new ArrayList<KeyValue>();
+		for (int i = 0; i < n; ++i) {
+			String row = String.format("/data/region-%d/host-%03d/metric", i / 50, i / 5);
+			String qualifier = String.format("sensor:temperature:%04d", i);
+			Key key = new Key(row.getBytes(), "readings".getBytes(), qualifier.getBytes(), "public".getBytes(),
+					1000000L + i * 10, i % 13 == 0, false);
+			entries.add(new KeyValue(key, new Value(Integer.toString(i).getBytes())));
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+public class PipelinedEvaluatorTest {
+
+	@Test
+	public void evaluatesInOrder() {
+		List<List<KeyValue>> batches = new ArrayList<List<KeyValue>>();
+		for (int i = 1; i <= 10; ++i) {
+			List<KeyValue> batch = new ArrayList<KeyValue>();
+			for (int j = 0; j < i; ++j) {
+				batch.add(TransportCompressionTest.generate());
+			}
+			batches.add(batch);
+		}
+		TransportCompression deflated = new ColumnarTransportCompression(DeflateCodec.DEFAULT);
+		List<TransportCompression> compressions = Arrays.<TransportCompression> asList(
+				new ColumnarTransportCompression(), deflated);
+		List<CompressionSession> sessions = Collections.singletonList(deflated.newSession());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Iterator<List<CompressionStatistics>> evaluated = new PipelinedEvaluator(compressions, sessions, executor, 3)
+					.evaluate(batches.iterator());
+			for (int i = 1; i <= 10; ++i) {
+				List<CompressionStatistics> stats = evaluated.next();
+				assertEquals(3, stats.size());
+				for (CompressionStatistics stat : stats) {
+					assertEquals(i, stat.getBatchSize());
+				}
+				assertTrue(stats.get(1).isRoundtripVerified());
+			}
+			assertFalse(evaluated.hasNext());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
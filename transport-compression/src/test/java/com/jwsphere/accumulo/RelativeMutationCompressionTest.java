@@ -0,0 +1,54 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.codec.DeflateCodec;
+
+public class RelativeMutationCompressionTest {
+
+	@Test
+	public void roundtrip() {
+		List<Mutation> mutations = generate();
+		for (MutationCompression compression : new MutationCompression[] { new RelativeMutationCompression(),
+				new RelativeMutationCompression(DeflateCodec.DEFAULT) }) {
+			assertEquals(mutations, compression.decompress(compression.compress(mutations)));
+		}
+	}
+
+	private static List<Mutation> generate() {
+		Random random = new Random(11);
+		ColumnVisibility visibility = new ColumnVisibility("A&B");
+		List<Mutation> mutations = new ArrayList<Mutation>();
+		for (int i = 0; i < 200; ++i) {
+			Mutation mutation = new Mutation(String.format("row_%05d", i));
+			for (int j = 0; j < 5; ++j) {
+				byte[] family = ("family_" + j % 2).getBytes();
+				byte[] qualifier = String.format("qualifier_%02d", j).getBytes();
+				switch (random.nextInt(4)) {
+				case 0:
+					mutation.put(family, qualifier, visibility, ("value_" + random.nextInt()).getBytes());
+					break;
+				case 1:
+					mutation.putDelete(family, qualifier, visibility, 1000L + random.nextInt(100));
+					break;
+				case 2:
+					mutation.putDelete(family, qualifier, visibility);
+					break;
+				default:
+					mutation.put(family, qualifier, visibility, 1000L + random.nextInt(100), new byte[random.nextInt(20)]);
+				}
+			}
+			mutations.add(mutation);
+		}
+		return mutations;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+public class ScanCorpusTest {
+
+	@Test
+	public void roundtrip() throws IOException {
+		List<List<KeyValue>> batches = new ArrayList<List<KeyValue>>();
+		for (int i = 1; i <= 5; ++i) {
+			List<KeyValue> batch = new ArrayList<KeyValue>();
+			for (int j = 0; j < i * 10; ++j) {
+				Key key = new Key("row_" + i, "family", "qualifier_" + j, "A&B", j);
+				key.setDeleted(j % 7 == 0);
+				batch.add(new KeyValue(key, new Value(new byte[j])));
+			}
+			batches.add(batch);
+		}
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		ScanCorpusWriter writer = new ScanCorpusWriter(file);
+		for (List<KeyValue> batch : batches) {
+			writer.write(batch);
+		}
+		writer.close();
+		assertEquals(5, writer.getBatches());
+		assertEquals(150, writer.getEntries());
+
+		ScanCorpusReader reader = new ScanCorpusReader(new ByteArrayInputStream(file.toByteArray()));
+		for (List<KeyValue> batch : batches) {
+			assertEquals(batch, reader.next());
+		}
+		assertFalse(reader.hasNext());
+		reader.close();
+	}
+
+	@Test
+	public void rejectsOtherFiles() throws IOException {
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(file);
+		out.write(new byte[] { 1, 2, 3, 4, 5 });
+		out.close();
+		try {
+			new ScanCorpusReader(new ByteArrayInputStream(file.toByteArray()));
+			fail("accepted a file without the corpus header");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.jwsphere.accumulo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ScansTest {
+
+	@Test
+	public void sampleEvery() {
+		List<Integer> values = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+		assertEquals(Arrays.asList(0, 3, 6), Lists.newArrayList(Scans.sampleEvery(values.iterator(), 3)));
+		assertEquals(values, Lists.newArrayList(Scans.sampleEvery(values.iterator(), 1)));
+	}
+
+	@Test
+	public void sampleFraction() {
+		List<Integer> values = new ArrayList<Integer>();
+		for (int i = 0; i < 10000; ++i) {
+			values.add(i);
+		}
+		int sampled = Lists.newArrayList(Scans.sampleFraction(values.iterator(), 0.1, new Random(7))).size();
+		assertTrue(sampled > 800 && sampled < 1200);
+		assertEquals(values, Lists.newArrayList(Scans.sampleFraction(values.iterator(), 1.0, new Random(7))));
+	}
+
+	@Test
+	public void toMutationIterator() {
+		Key deleted = new Key("row_1", "family", "qualifier_b", "A", 5);
+		deleted.setDeleted(true);
+		List<Entry<Key, Value>> entries = Arrays.<Entry<Key, Value>> asList(
+				new KeyValue(new Key("row_0", "family", "qualifier_a", "A", 7), "a".getBytes()),
+				new KeyValue(new Key("row_0", "family", "qualifier_b", "B", 7), "b".getBytes()),
+				new KeyValue(deleted, new byte[0]),
+				new KeyValue(new Key("row_2", "family", "qualifier_c", "", 3), "c".getBytes()));
+		List<Mutation> mutations = Lists.newArrayList(Scans.toMutationIterator(entries.iterator()));
+		assertEquals(3, mutations.size());
+		assertEquals("row_0", new String(mutations.get(0).getRow()));
+		assertEquals(2, mutations.get(0).getUpdates().size());
+		ColumnUpdate update = mutations.get(1).getUpdates().get(0);
+		assertTrue(update.isDeleted());
+		assertEquals(5, update.getTimestamp());
+		assertEquals("B", new String(mutations.get(0).getUpdates().get(1).getColumnVisibility()));
+	}
+
+	@Test
+	public void splitsWideRowsIntoMutations() {
+		List<Entry<Key, Value>> entries = new ArrayList<Entry<Key, Value>>();
+		for (int i = 0; i < 25; ++i) {
+			entries.add(new KeyValue(new Key("wide", "family", String.format("qualifier_%02d", i)), new byte[10]));
+		}
+		entries.add(new KeyValue(new Key("narrow", "family", "qualifier"), new byte[10]));
+		List<Mutation> mutations = Lists.newArrayList(Scans.toMutationIterator(entries.iterator(), BatchBudget.entries(10)));
+		assertEquals(4, mutations.size());
+		assertEquals(10, mutations.get(0).getUpdates().size());
+		assertEquals(5, mutations.get(2).getUpdates().size());
+		assertEquals("wide", new String(mutations.get(2).getRow()));
+		assertEquals("narrow", new String(mutations.get(3).getRow()));
+
+		long size = BatchBudget.sizeOf(entries.get(0));
+		mutations = Lists.newArrayList(Scans.toMutationIterator(entries.iterator(), BatchBudget.bytes(4 * size)));
+		assertEquals(8, mutations.size());
+		assertEquals(4, mutations.get(0).getUpdates().size());
+	}
+
+	@Test
+	public void batchesByEntries() {
+		List<Entry<Key, Value>> entries = entries(10, 10);
+		List<List<KeyValue>> batches = Lists.newArrayList(Scans.toBatchIterator(entries.iterator(), 4));
+		assertEquals(3, batches.size());
+		assertEquals(2, batches.get(2).size());
+		assertSame(entries.get(0), batches.get(0).get(0));
+	}
+
+	@Test
+	public void batchesByBytes() {
+		List<Entry<Key, Value>> entries = entries(10, 100);
+		long size = BatchBudget.sizeOf(entries.get(0));
+		List<List<KeyValue>> batches = Lists.newArrayList(
+				Scans.toBatchIterator(entries.iterator(), BatchBudget.bytes(3 * size + 1)));
+		assertEquals(4, batches.size());
+		assertEquals(3, batches.get(0).size());
+
+		// an entry larger than the budget forms a batch of its own
+		batches = Lists.newArrayList(Scans.toBatchIterator(entries.iterator(), BatchBudget.bytes(1)));
+		assertEquals(10, batches.size());
+
+		batches = Lists.newArrayList(Scans.toBatchIterator(entries.iterator(), BatchBudget.entries(2).withMaxBytes(3 * size)));
+		assertEquals(5, batches.size());
+	}
+
+	@Test
+	public void batchesByCompressedBytes() {
+		List<Entry<Key, Value>> entries = entries(100, 100);
+		long size = BatchBudget.sizeOf(entries.get(0));
+		BatchBudget budget = BatchBudget.compressedBytes(10 * size);
+		Iterator<List<KeyValue>> batches = Scans.toBatchIterator(entries.iterator(), budget);
+		assertEquals(10, batches.next().size());
+		budget.observe(new CompressionStatistics("test", 400, 100, 10));
+		assertEquals(25, batches.next().size());
+	}
+
+	private static List<Entry<Key, Value>> entries(int count, int valueSize) {
+		List<Entry<Key, Value>> entries = new ArrayList<Entry<Key, Value>>();
+		for (int i = 0; i < count; ++i) {
+			entries.add(new KeyValue(new Key(String.format("row_%05d", i), "family", "qualifier"), new byte[valueSize]));
+		}
+		return entries;
+	}
+
+}
@@ -10,6 +10,8 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyValue;
 import org.apache.accumulo.core.data.Value;
 
+import com.google.common.collect.Lists;
+
 public class TransportCompressionTest {
 
 	
@@ -21,6 +23,7 @@ public class TransportCompressionTest {
 		List<KeyValue> decompressed = compressor.decompress(compressor.compress(entries));
 		
 		assertEquals(entries, decompressed);
+		assertEquals(entries, Lists.newArrayList(compressor.decompressIterator(compressor.compress(entries))));
 	}
 	
 	public static KeyValue generate() {
@@ -0,0 +1,82 @@
+package com.jwsphere.accumulo.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.TransportCompression;
+import com.jwsphere.accumulo.TransportCompressionTest;
+import com.jwsphere.accumulo.iterators.CompressingIterator;
+
+public class ParallelDecoderTest {
+
+	private static final TransportCompression COMPRESSION = CompressingIterator.createCompression(
+			CompressingIterator.options("columnar", "deflate", 100));
+
+	@Test
+	public void decodesInOrder() {
+		List<Entry<Key, Value>> original = new ArrayList<Entry<Key, Value>>();
+		List<Entry<Key, Value>> compressed = compress(original);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int maxInFlight = 1; maxInFlight <= 8; maxInFlight *= 2) {
+				ParallelDecoder decoder = new ParallelDecoder(COMPRESSION, executor, maxInFlight, true);
+				assertEquals(original, Lists.newArrayList(decoder.decode(compressed.iterator())));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void decodesUnordered() {
+		List<Entry<Key, Value>> original = new ArrayList<Entry<Key, Value>>();
+		List<Entry<Key, Value>> compressed = compress(original);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ParallelDecoder decoder = new ParallelDecoder(COMPRESSION, executor, 4, false);
+			List<Entry<Key, Value>> decoded = Lists.newArrayList(decoder.decode(compressed.iterator()));
+			assertEquals(sorted(original), sorted(decoded));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static List<Entry<Key, Value>> compress(List<Entry<Key, Value>> original) {
+		List<Entry<Key, Value>> compressed = new ArrayList<Entry<Key, Value>>();
+		for (int i = 1; i <= 20; ++i) {
+			List<KeyValue> batch = new ArrayList<KeyValue>();
+			for (int j = 0; j < i; ++j) {
+				batch.add(TransportCompressionTest.generate());
+			}
+			original.addAll(batch);
+			byte[] value = COMPRESSION.compress(batch).get(0).getValue();
+			compressed.add(new KeyValue(batch.get(i - 1).getKey(), value));
+		}
+		return compressed;
+	}
+
+	private static List<Entry<Key, Value>> sorted(List<Entry<Key, Value>> entries) {
+		List<Entry<Key, Value>> sorted = new ArrayList<Entry<Key, Value>>(entries);
+		Collections.sort(sorted, new Comparator<Entry<Key, Value>>() {
+			public int compare(Entry<Key, Value> a, Entry<Key, Value> b) {
+				int c = a.getKey().compareTo(b.getKey());
+				return c != 0 ? c : a.getValue().compareTo(b.getValue());
+			}
+		});
+		return sorted;
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.jwsphere.accumulo.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class DeflateCodecTest {
+
+	@Test
+	public void roundtrip() throws IOException {
+		byte[] data = "row:family:qualifier:A&B&C:row:family:qualifier:A&B&C".getBytes("UTF-8");
+		for (Codec codec : new Codec[] { DeflateCodec.DEFAULT, DeflateCodec.BEST_SPEED, DeflateCodec.FILTERED,
+				DeflateCodec.HUFFMAN_ONLY }) {
+			assertArrayEquals(data, LzCodecTest.roundtrip(codec, data));
+		}
+	}
+
+	@Test
+	public void reusesPooledDeflaters() throws IOException {
+		DeflateCodec codec = new DeflateCodec(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, 1);
+		byte[] data = new byte[1000];
+		for (int i = 0; i < 10; ++i) {
+			assertArrayEquals(data, LzCodecTest.roundtrip(codec, data));
+		}
+		assertEquals(1, codec.getDeflaterPool().getMisses());
+		assertEquals(9, codec.getDeflaterPool().getHits());
+		assertEquals(1, codec.getInflaterPool().getMisses());
+		assertEquals(9, codec.getInflaterPool().getHits());
+	}
+
+	@Test
+	public void discardsWhenFull() throws IOException {
+		DeflateCodec codec = new DeflateCodec(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, 1);
+		OutputStream first = codec.compress(new ByteArrayOutputStream());
+		OutputStream second = codec.compress(new ByteArrayOutputStream());
+		first.close();
+		second.close();
+		second.close();
+		assertEquals(2, codec.getDeflaterPool().getMisses());
+		assertEquals(1, codec.getDeflaterPool().getDiscards());
+		assertEquals(1, codec.getDeflaterPool().getIdle());
+	}
+
+	@Test
+	public void roundtripWithDictionary() throws IOException {
+		byte[] dictionary = "qualifier:A&B&C:family:".getBytes("UTF-8");
+		byte[] data = "row:family:qualifier:A&B&C".getBytes("UTF-8");
+		DeflateCodec codec = DeflateCodec.DEFAULT.withDictionary(dictionary);
+		assertArrayEquals(data, LzCodecTest.roundtrip(codec, data));
+		assertArrayEquals(data, LzCodecTest.roundtrip(codec, data));
+		assertTrue(LzCodecTest.compress(codec, data).length < LzCodecTest.compress(DeflateCodec.DEFAULT, data).length);
+	}
+
+	@Test
+	public void sessionCarriesHistoryAcrossBatches() throws IOException {
+		byte[] data = "row:family:qualifier:A&B&C:0123456789abcdef".getBytes("UTF-8");
+		CodecSession encoder = DeflateCodec.DEFAULT.newSession();
+		CodecSession decoder = DeflateCodec.DEFAULT.newSession();
+		byte[] first = compress(encoder, data);
+		byte[] second = compress(encoder, data);
+		assertTrue(second.length < first.length);
+		assertArrayEquals(data, decompress(decoder, first));
+		assertArrayEquals(data, decompress(decoder, second));
+		encoder.close();
+		decoder.close();
+	}
+
+	private static byte[] compress(CodecSession session, byte[] data) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream out = session.compress(baos);
+		out.write(data);
+		out.close();
+		return baos.toByteArray();
+	}
+
+	private static byte[] decompress(CodecSession session, byte[] data) throws IOException {
+		InputStream in = session.decompress(new ByteArrayInputStream(data));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			baos.write(b);
+		}
+		in.close();
+		return baos.toByteArray();
+	}
+
+}
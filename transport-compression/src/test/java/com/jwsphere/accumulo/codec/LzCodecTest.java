@@ -0,0 +1,74 @@
+package com.jwsphere.accumulo.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LzCodecTest {
+
+	@Test
+	public void roundtripRandom() throws IOException {
+		byte[] data = new byte[100000];
+		new Random(42).nextBytes(data);
+		assertArrayEquals(data, roundtrip(LzCodec.DEFAULT, data));
+	}
+
+	@Test
+	public void roundtripRepetitive() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; ++i) {
+			sb.append("row_").append(i / 100).append(":family:qualifier_").append(i % 7).append("A&B&C");
+		}
+		byte[] data = sb.toString().getBytes("UTF-8");
+		byte[] compressed = compress(LzCodec.DEFAULT, data);
+		assertTrue(compressed.length < data.length / 4);
+		assertArrayEquals(data, decompress(LzCodec.DEFAULT, compressed));
+	}
+
+	@Test
+	public void roundtripSmallBlocks() throws IOException {
+		byte[] data = new byte[5000];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) (i % 3 == 0 ? i : 7);
+		}
+		assertArrayEquals(data, roundtrip(new LzCodec(128), data));
+	}
+
+	@Test
+	public void roundtripEmpty() throws IOException {
+		assertArrayEquals(new byte[0], roundtrip(LzCodec.DEFAULT, new byte[0]));
+	}
+
+	static byte[] roundtrip(Codec codec, byte[] data) throws IOException {
+		return decompress(codec, compress(codec, data));
+	}
+
+	static byte[] compress(Codec codec, byte[] data) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream out = codec.compress(baos);
+		out.write(data);
+		out.close();
+		return baos.toByteArray();
+	}
+
+	static byte[] decompress(Codec codec, byte[] data) throws IOException {
+		InputStream in = codec.decompress(new ByteArrayInputStream(data));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			baos.write(buffer, 0, n);
+		}
+		in.close();
+		return baos.toByteArray();
+	}
+
+}
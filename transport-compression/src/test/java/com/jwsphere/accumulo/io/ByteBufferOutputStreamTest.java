@@ -0,0 +1,61 @@
+package com.jwsphere.accumulo.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferOutputStreamTest {
+
+	@Test
+	public void growsDirectBuffer() throws IOException {
+		ByteBufferOutputStream out = new ByteBufferOutputStream(4, true);
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) i;
+		}
+		out.write(data, 0, 10);
+		out.write(data, 10, data.length - 10);
+		assertEquals(data.length, out.size());
+		ByteBuffer view = out.toByteBuffer();
+		assertTrue(view.isDirect());
+		assertArrayEquals(data, toArray(view));
+	}
+
+	@Test
+	public void writesAfterSuppliedPosition() {
+		ByteBuffer supplied = ByteBuffer.allocate(16);
+		supplied.put((byte) 42);
+		ByteBufferOutputStream out = new ByteBufferOutputStream(supplied);
+		out.write(1);
+		out.write(2);
+		assertArrayEquals(new byte[] { 1, 2 }, toArray(out.toByteBuffer()));
+		assertEquals(42, supplied.get(0));
+
+		out.reset();
+		out.write(3);
+		assertArrayEquals(new byte[] { 3 }, toArray(out.toByteBuffer()));
+	}
+
+	@Test
+	public void readsWithoutCopying() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+		assertEquals(1, in.read());
+		byte[] rest = new byte[4];
+		assertEquals(2, in.read(rest, 0, rest.length));
+		assertEquals(-1, in.read());
+		assertEquals(0, buffer.position());
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+}
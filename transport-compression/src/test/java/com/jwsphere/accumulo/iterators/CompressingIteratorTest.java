@@ -0,0 +1,97 @@
+package com.jwsphere.accumulo.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.jwsphere.accumulo.client.CompressedScanner;
+
+public class CompressingIteratorTest {
+
+	private static final int ENTRIES = 2500;
+
+	@Test
+	public void roundtrip() throws IOException {
+		TreeMap<Key, Value> data = generate();
+		for (String encoding : new String[] { "columnar", "columnar-dict", "adaptive" }) {
+			List<Entry<Key, Value>> compressed = scan(data, encoding, new Range());
+			assertEquals(3, compressed.size());
+			assertEquals(data.lastKey(), compressed.get(2).getKey());
+			assertEquals(Lists.newArrayList(data.entrySet()), decode(compressed, encoding));
+		}
+	}
+
+	@Test
+	public void resumesAfterBatch() throws IOException {
+		TreeMap<Key, Value> data = generate();
+		Key first = scan(data, "columnar", new Range()).get(0).getKey();
+		List<Entry<Key, Value>> resumed = scan(data, "columnar", new Range(first, false, null, true));
+		assertEquals(Lists.newArrayList(data.tailMap(first, false).entrySet()), decode(resumed, "columnar"));
+	}
+
+	@Test
+	public void adaptsToCompressedTarget() throws IOException {
+		TreeMap<Key, Value> data = generate();
+		Map<String, String> options = CompressingIterator.options("columnar", "deflate", ENTRIES);
+		options.put(CompressingIterator.BATCH_COMPRESSED_BYTES_OPTION, "2000");
+		List<Entry<Key, Value>> compressed = scan(data, options, new Range());
+		int first = count(compressed.get(0));
+		assertTrue(count(compressed.get(1)) > first);
+		assertEquals(Lists.newArrayList(data.entrySet()), decode(compressed, "columnar"));
+	}
+
+	private static int count(Entry<Key, Value> batch) {
+		Map<String, String> options = CompressingIterator.options("columnar", "deflate", ENTRIES);
+		return Lists.newArrayList(CompressedScanner.decode(Collections.singletonList(batch).iterator(),
+				CompressingIterator.createCompression(options))).size();
+	}
+
+	private static TreeMap<Key, Value> generate() {
+		TreeMap<Key, Value> data = new TreeMap<Key, Value>();
+		for (int i = 0; i < ENTRIES; ++i) {
+			data.put(new Key(String.format("row_%05d", i / 10), "family", "qualifier_" + i % 10, "A&B&C", i),
+					new Value(("value_" + i).getBytes()));
+		}
+		return data;
+	}
+
+	private static List<Entry<Key, Value>> scan(TreeMap<Key, Value> data, String encoding, Range range)
+			throws IOException {
+		return scan(data, CompressingIterator.options(encoding, "deflate", 1000), range);
+	}
+
+	private static List<Entry<Key, Value>> scan(TreeMap<Key, Value> data, Map<String, String> options, Range range)
+			throws IOException {
+		CompressingIterator iterator = new CompressingIterator();
+		iterator.init(new SortedMapIterator(data), options, null);
+		iterator.seek(range, Collections.<ByteSequence> emptySet(), false);
+		List<Entry<Key, Value>> results = new ArrayList<Entry<Key, Value>>();
+		while (iterator.hasTop()) {
+			results.add(new KeyValue(iterator.getTopKey(), iterator.getTopValue().get()));
+			iterator.next();
+		}
+		return results;
+	}
+
+	private static List<Entry<Key, Value>> decode(List<Entry<Key, Value>> compressed, String encoding) {
+		Map<String, String> options = CompressingIterator.options(encoding, "deflate", 1000);
+		return Lists.newArrayList(CompressedScanner.decode(compressed.iterator(), CompressingIterator.createCompression(options)));
+	}
+
+}
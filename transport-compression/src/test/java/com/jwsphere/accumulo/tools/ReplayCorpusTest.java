@@ -0,0 +1,49 @@
+package com.jwsphere.accumulo.tools;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.KeyValue;
+import org.junit.Test;
+
+import com.jwsphere.accumulo.ScanCorpusWriter;
+import com.jwsphere.accumulo.TransportCompressionTest;
+
+public class ReplayCorpusTest {
+
+	@Test
+	public void replaysFiles() throws IOException {
+		File file = File.createTempFile("replay", ".corpus");
+		file.deleteOnExit();
+		ScanCorpusWriter writer = new ScanCorpusWriter(file);
+		for (int i = 0; i < 4; ++i) {
+			List<KeyValue> batch = new ArrayList<KeyValue>();
+			for (int j = 0; j < 20; ++j) {
+				batch.add(TransportCompressionTest.generate());
+			}
+			writer.write(batch);
+		}
+		writer.close();
+
+		ReplayCorpus replay = new ReplayCorpus();
+		replay.parse(new String[] { "--threads", "2", file.getPath(), file.getPath() });
+		List<String> report = replay.run();
+		assertTrue(report.get(report.size() - 2).startsWith("recommendation : "));
+	}
+
+	@Test
+	public void rejectsUnknownOptions() {
+		try {
+			new ReplayCorpus().parse(new String[] { "--bogus", "file" });
+			fail("accepted an unknown option");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}